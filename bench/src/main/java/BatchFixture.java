@@ -0,0 +1,46 @@
+///=============================================================================
+///@file    BatchFixture.java
+///@brief   Exposes a batch of races to the benchmarks.
+///=============================================================================
+
+public class BatchFixture implements bench.BatchOps
+{
+	final private static float MAX_DRIFT = 60.0f / (PolePosition.BASE_WIDTH / 2);	//off center before steering back
+
+	private BatchSimulation m_Batch;
+	private int[] m_Actions;
+
+	public void setUp(int races)
+	{
+		m_Batch = new BatchSimulation(new Track(), races);
+		m_Actions = new int[races];
+	}
+
+	public float step()
+	{
+		//the autopilot of TrafficFixture, from the observations
+		float[] observations = m_Batch.getObservations();
+		for (int i = 0; i < m_Actions.length; ++i)
+		{
+			float position = observations[i * BatchSimulation.OBSERVATIONS + BatchSimulation.POSITION];
+			int action = BatchSimulation.GAS;
+			if (position > MAX_DRIFT)
+			{
+				action |= BatchSimulation.RIGHT;
+			}
+			else if (position < -MAX_DRIFT)
+			{
+				action |= BatchSimulation.LEFT;
+			}
+			m_Actions[i] = action;
+		}
+
+		m_Batch.step(m_Actions);
+		return m_Batch.getRewards()[0];
+	}
+
+	public void tearDown()
+	{
+		m_Batch.close();
+	}
+}
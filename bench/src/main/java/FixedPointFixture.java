@@ -0,0 +1,55 @@
+///=============================================================================
+///@file    FixedPointFixture.java
+///@brief   Exposes FixedPoint to the benchmarks.
+///=============================================================================
+
+public class FixedPointFixture implements bench.FixedPointOps
+{
+	private FixedPoint m_A;
+	private FixedPoint m_B;
+	private int m_ValueA;
+	private int m_ValueB;
+
+	public FixedPointFixture()
+	{
+		setUp(1.5, 3.25);
+	}
+
+	public void setUp(double a, double b)
+	{
+		m_A = new FixedPoint(a);
+		m_B = new FixedPoint(b);
+		m_ValueA = FixedPoint.FromDouble(a);
+		m_ValueB = FixedPoint.FromDouble(b);
+	}
+
+	public int mulInt(int i)
+	{
+		return m_A.Mul(i);
+	}
+
+	public int mulFixed()
+	{
+		return m_A.Mul(m_B);
+	}
+
+	public int divInt(int i)
+	{
+		return m_A.Div(i);
+	}
+
+	public int divFixed()
+	{
+		return m_A.Div(m_B);
+	}
+
+	public int mulStatic()
+	{
+		return FixedPoint.Mul(m_ValueA, m_ValueB);
+	}
+
+	public int divStatic()
+	{
+		return FixedPoint.Div(m_ValueA, m_ValueB);
+	}
+}
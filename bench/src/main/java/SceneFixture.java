@@ -0,0 +1,169 @@
+///=============================================================================
+///@file    SceneFixture.java
+///@brief   Draws the game objects into an offscreen image for the benchmarks.
+///=============================================================================
+
+import java.awt.*;
+import java.awt.image.*;
+
+public class SceneFixture implements bench.SceneOps
+{
+	final private static int OPPONENTS = 8;	//cars spread over the visible road
+
+	private BufferedImage m_Target;		//what we draw into
+	private Graphics2D m_Graphics;
+	private int[] m_Pixels;				//the target's pixels
+	private Track m_Track;
+	private Road m_Road;
+	private Landscape m_Landscape;
+	private Scenery m_Scenery;
+	private Opponents m_Opponents;
+	private HUD m_HUD;
+	private Animator m_Animator;
+	private SoftwareRenderer m_Software;
+	private Player m_Player;
+	private RenderQueue m_Queue;
+	private GameState m_State;
+
+	public SceneFixture()
+	{
+		m_Target = new BufferedImage(PolePosition.APP_WIDTH, PolePosition.APP_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		m_Graphics = m_Target.createGraphics();
+		m_Pixels = ((DataBufferInt) m_Target.getRaster().getDataBuffer()).getData();
+
+		m_Track = new Track();
+		m_Road = new Road(m_Track);
+		m_Landscape = new Landscape();
+		m_Scenery = new Scenery(m_Track, m_Road);
+		m_Scenery.addFrame(Roadside.TREE, "images/tree.png");
+		m_Scenery.addFrame(Roadside.SIGN_LEFT, "images/sign_left.png");
+		m_Scenery.addFrame(Roadside.SIGN_RIGHT, "images/sign_right.png");
+		m_Scenery.addFrame(Roadside.BANNER1, "images/banner1.png");
+		m_Scenery.addFrame(Roadside.BANNER2, "images/banner2.png");
+		m_Opponents = new Opponents(m_Track, m_Road);
+		m_Opponents.addFrame(1, "images/car1.png");
+		m_HUD = new HUD();
+		Settings settings = new Settings();
+		settings.activeRendering = false;
+		settings.opponents = OPPONENTS;
+		settings.width = PolePosition.APP_WIDTH;
+		settings.height = PolePosition.APP_HEIGHT;
+		m_Animator = new Animator(settings, false);
+
+		m_Player = new Player(9);
+		for (int i = 1; i <= 9; ++i)
+		{
+			m_Player.addFrame(i, "images/car" + i + ".png");
+		}
+		m_Player.setX(PolePosition.APP_WIDTH / 2 - PolePosition.scaleX(Player.WIDTH) / 2);
+		m_Player.setY(PolePosition.APP_HEIGHT - PolePosition.scaleY(Player.HEIGTH + 10));
+		m_Player.on();
+		m_Software = new SoftwareRenderer(new Drawable[] { m_Landscape, m_Road, m_Scenery, m_Opponents, m_Player, m_HUD });
+		m_Queue = new RenderQueue();
+
+		m_State = new GameState(OPPONENTS);
+	}
+
+	public void setUp(int curve, int borderChange)
+	{
+		GameState s = m_State;
+
+		//find a spot of the track with the requested curve
+		s.distance = 0;
+		for (int d = 0; d < m_Track.getLength(); ++d)
+		{
+			if (m_Track.getOffset(d) == curve)
+			{
+				s.distance = FixedPoint.LongFromInt(d);
+				break;
+			}
+		}
+
+		s.speed = Player.MAX_SPEED;
+		s.accelerating = true;
+		s.steer = Player.STEER_NONE;
+		s.frame = Player.STEER_NONE;
+		s.scroll = 0;
+		s.borderChange = borderChange;
+		s.borderSwapped = false;
+
+		s.landscapeOffset = Landscape.TILE_WIDTH / 2;
+
+		//opponents in both lanes, from next to the player to the horizon
+		for (int i = 0; i < OPPONENTS; ++i)
+		{
+			s.oppDistance[i] = s.distance + (i + 1) * Opponents.VIEW_DISTANCE / (OPPONENTS + 1);
+			s.oppLane[i] = (i % 2 == 0) ? -100 : 100;
+			s.oppSpeed[i] = 200;
+			s.oppId[i] = i;
+			s.oppPlace[i] = i;
+		}
+
+		//no motion between ticks: previous == current
+		Simulation sim = m_Animator.getSimulation();
+		sim.getState().copyFrom(s);
+		sim.getPrevious().copyFrom(s);
+		m_Animator.publish();
+	}
+
+	public void drawRoad()
+	{
+		m_Road.draw(m_Graphics, m_State, m_State, 1.0f);
+	}
+
+	public void drawRoadRaster()
+	{
+		m_Road.draw(m_Pixels, PolePosition.APP_WIDTH, m_State, m_State, 1.0f);
+	}
+
+	public void drawLandscape()
+	{
+		draw(m_Landscape);
+	}
+
+	public void drawRoadside()
+	{
+		draw(m_Scenery);
+	}
+
+	public void drawOpponents()
+	{
+		draw(m_Opponents);
+	}
+
+	public void drawHud()
+	{
+		draw(m_HUD);
+	}
+
+	//one drawable through the queue, the way Animator draws it
+	private void draw(Drawable d)
+	{
+		m_Queue.clear();
+		d.submit(m_Queue, m_State, m_State, 1.0f);
+		m_Queue.sort();
+		m_Queue.draw(m_Graphics, null, 0);
+	}
+
+	public void paint()
+	{
+		m_Animator.redrawAll();
+		m_Animator.paint(m_Graphics);
+	}
+
+	public void paintIdle()
+	{
+		m_Animator.paint(m_Graphics);
+	}
+
+	public void renderSoftware()
+	{
+		m_Software.invalidate();
+		m_Software.render(m_State, m_State, 1.0f);
+	}
+
+	public void renderSoftwareIdle()
+	{
+		m_Software.render(m_State, m_State, 1.0f);
+	}
+}
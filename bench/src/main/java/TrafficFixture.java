@@ -0,0 +1,38 @@
+///=============================================================================
+///@file    TrafficFixture.java
+///@brief   Exposes the simulation, with opponents, to the benchmarks.
+///=============================================================================
+
+public class TrafficFixture implements bench.TrafficOps
+{
+	final private static int MAX_DRIFT = 60;	//pixels off center before steering back
+
+	private Simulation m_Simulation;
+
+	public void setUp(int opponents)
+	{
+		m_Simulation = new Simulation(new Track(), 1, opponents);
+	}
+
+	public int step()
+	{
+		GameState s = m_Simulation.getState();
+
+		m_Simulation.accelerate(true);
+		if (s.scroll > MAX_DRIFT)
+		{
+			m_Simulation.setSteerDirection(Player.STEER_RIGHT);
+		}
+		else if (s.scroll < -MAX_DRIFT)
+		{
+			m_Simulation.setSteerDirection(Player.STEER_LEFT);
+		}
+		else
+		{
+			m_Simulation.setSteerDirection(Player.STEER_NONE);
+		}
+
+		m_Simulation.step();
+		return s.speed;
+	}
+}
@@ -0,0 +1,43 @@
+///=============================================================================
+///@file    BatchBenchmark.java
+///@brief   Cost of stepping a batch of races as the batch grows.
+///=============================================================================
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark
+{
+	//a single chunk (stepped on the caller's thread), then many
+	@Param({"1000", "100000"})
+	int races;
+
+	private BatchOps m_Batch;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		m_Batch = Fixtures.create("BatchFixture", BatchOps.class);
+		m_Batch.setUp(races);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		m_Batch.tearDown();
+	}
+
+	@Benchmark
+	public float step()
+	{
+		return m_Batch.step();
+	}
+}
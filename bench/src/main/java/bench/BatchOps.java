@@ -0,0 +1,26 @@
+///=============================================================================
+///@file    BatchOps.java
+///@brief   Batches of races (BatchSimulation) benchmarked.
+///=============================================================================
+
+package bench;
+
+public interface BatchOps
+{
+	///=========================================================================
+	///Starts the races
+	///@param int races		number of races stepped together
+	///=========================================================================
+	void setUp(int races);
+
+	///=========================================================================
+	///Steps every race by one tick (each driven by the autopilot)
+	///@return the first race's reward, so the step can't be optimized away
+	///=========================================================================
+	float step();
+
+	///=========================================================================
+	///Stops the workers stepping the races
+	///=========================================================================
+	void tearDown();
+}
@@ -0,0 +1,92 @@
+///=============================================================================
+///@file    FixedPointBenchmark.java
+///@brief   FixedPoint Mul/Div against plain float and int math.
+///=============================================================================
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPointBenchmark
+{
+	//operands live in fields so the JIT cannot fold them
+	private int m_I = 3;
+	private int m_J = 7;
+	private float m_F = 1.5f;
+	private float m_G = 3.25f;
+	private FixedPointOps m_Fixed;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		m_Fixed = Fixtures.create("FixedPointFixture", FixedPointOps.class);
+		m_Fixed.setUp(m_F, m_G);
+	}
+
+	@Benchmark
+	public int fixedMulInt()
+	{
+		return m_Fixed.mulInt(m_I);
+	}
+
+	@Benchmark
+	public int fixedMulFixed()
+	{
+		return m_Fixed.mulFixed();
+	}
+
+	@Benchmark
+	public int fixedDivInt()
+	{
+		return m_Fixed.divInt(m_I);
+	}
+
+	@Benchmark
+	public int fixedDivFixed()
+	{
+		return m_Fixed.divFixed();
+	}
+
+	@Benchmark
+	public int staticMul()
+	{
+		return m_Fixed.mulStatic();
+	}
+
+	@Benchmark
+	public int staticDiv()
+	{
+		return m_Fixed.divStatic();
+	}
+
+	@Benchmark
+	public float floatMul()
+	{
+		return m_F * m_G;
+	}
+
+	@Benchmark
+	public float floatDiv()
+	{
+		return m_F / m_G;
+	}
+
+	@Benchmark
+	public int intMul()
+	{
+		return m_I * m_J;
+	}
+
+	@Benchmark
+	public int intDiv()
+	{
+		return m_J / m_I;
+	}
+}
@@ -0,0 +1,32 @@
+///=============================================================================
+///@file    FixedPointOps.java
+///@brief   FixedPoint operations benchmarked against plain int/float math.
+///=============================================================================
+
+package bench;
+
+public interface FixedPointOps
+{
+	///=========================================================================
+	///Sets the 16.16 operands (as doubles)
+	///=========================================================================
+	void setUp(double a, double b);
+
+	//FixedPoint.Mul(int)
+	int mulInt(int i);
+
+	//FixedPoint.Mul(FixedPoint)
+	int mulFixed();
+
+	//FixedPoint.Div(int)
+	int divInt(int i);
+
+	//FixedPoint.Div(FixedPoint)
+	int divFixed();
+
+	//FixedPoint.Mul(int, int), on plain 16.16 ints
+	int mulStatic();
+
+	//FixedPoint.Div(int, int), on plain 16.16 ints
+	int divStatic();
+}
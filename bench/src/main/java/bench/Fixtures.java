@@ -0,0 +1,39 @@
+///=============================================================================
+///@file    Fixtures.java
+///@brief   Creates the benchmark fixtures that live in the default package.
+///=============================================================================
+
+package bench;
+
+///=============================================================================
+///JMH refuses benchmark classes in the default package, and a named package
+///cannot import classes from the default package, where all the game classes
+///live. So the benchmarks (package bench) talk to small fixtures in the
+///default package through the public interfaces of this package; the
+///fixtures are created once per trial by name, after that every call is a
+///plain (monomorphic, inlinable) interface call.
+///=============================================================================
+final class Fixtures
+{
+	private Fixtures()
+	{
+	}
+
+	///=========================================================================
+	///Creates a fixture
+	///@param String name	class name of the fixture (default package)
+	///@param Class type	the interface it implements
+	///@return a new instance of the fixture
+	///=========================================================================
+	static <T> T create(String name, Class<T> type)
+	{
+		try
+		{
+			return type.cast(Class.forName(name).newInstance());
+		}
+		catch (Exception ex)
+		{
+			throw new IllegalStateException("Could not create fixture " + name, ex);
+		}
+	}
+}
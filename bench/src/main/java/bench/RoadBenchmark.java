@@ -0,0 +1,47 @@
+///=============================================================================
+///@file    RoadBenchmark.java
+///@brief   Road.draw across road states.
+///=============================================================================
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RoadBenchmark
+{
+	//straight road and the sharpest left/right curves
+	@Param({"0", "-9", "9"})
+	int curve;
+
+	//first border-color change at the bottom, middle and top of its band
+	@Param({"0", "15", "30"})
+	int borderChange;
+
+	private SceneOps m_Scene;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		m_Scene = Fixtures.create("SceneFixture", SceneOps.class);
+		m_Scene.setUp(curve, borderChange);
+	}
+
+	@Benchmark
+	public void drawRoad()
+	{
+		m_Scene.drawRoad();
+	}
+
+	@Benchmark
+	public void drawRoadRaster()
+	{
+		m_Scene.drawRoadRaster();
+	}
+}
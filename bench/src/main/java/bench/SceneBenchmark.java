@@ -0,0 +1,79 @@
+///=============================================================================
+///@file    SceneBenchmark.java
+///@brief   Landscape, roadside, opponents, HUD and whole-frame rendering.
+///=============================================================================
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SceneBenchmark
+{
+	//straight road and the sharpest left/right curves
+	@Param({"0", "-9", "9"})
+	int curve;
+
+	private SceneOps m_Scene;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		m_Scene = Fixtures.create("SceneFixture", SceneOps.class);
+		m_Scene.setUp(curve, 15);
+	}
+
+	@Benchmark
+	public void drawLandscape()
+	{
+		m_Scene.drawLandscape();
+	}
+
+	@Benchmark
+	public void drawRoadside()
+	{
+		m_Scene.drawRoadside();
+	}
+
+	@Benchmark
+	public void drawOpponents()
+	{
+		m_Scene.drawOpponents();
+	}
+
+	@Benchmark
+	public void drawHud()
+	{
+		m_Scene.drawHud();
+	}
+
+	@Benchmark
+	public void paint()
+	{
+		m_Scene.paint();
+	}
+
+	@Benchmark
+	public void paintIdle()
+	{
+		m_Scene.paintIdle();
+	}
+
+	@Benchmark
+	public void renderSoftware()
+	{
+		m_Scene.renderSoftware();
+	}
+
+	@Benchmark
+	public void renderSoftwareIdle()
+	{
+		m_Scene.renderSoftwareIdle();
+	}
+}
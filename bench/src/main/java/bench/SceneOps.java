@@ -0,0 +1,58 @@
+///=============================================================================
+///@file    SceneOps.java
+///@brief   Drawing operations benchmarked on a fixed game state.
+///=============================================================================
+
+package bench;
+
+public interface SceneOps
+{
+	///=========================================================================
+	///Sets the game state every following draw call renders
+	///@param int curve			road offset (curve) at the player's position
+	///@param int borderChange	y-coord of the first border-color change
+	///=========================================================================
+	void setUp(int curve, int borderChange);
+
+	void drawRoad();
+
+	///=========================================================================
+	///Draws the road straight into the pixels of the offscreen image
+	///=========================================================================
+	void drawRoadRaster();
+
+	void drawLandscape();
+
+	///=========================================================================
+	///Draws the roadside objects in view (the circuit's own, about 40)
+	///=========================================================================
+	void drawRoadside();
+
+	///=========================================================================
+	///Places and draws the opponent cars
+	///=========================================================================
+	void drawOpponents();
+
+	void drawHud();
+
+	///=========================================================================
+	///Renders a whole frame through Animator.paint into an offscreen image
+	///=========================================================================
+	void paint();
+
+	///=========================================================================
+	///Renders a frame through Animator.paint the same as the last one: only
+	///the bands that changed are drawn, so this is the cost of an idle frame
+	///=========================================================================
+	void paintIdle();
+
+	///=========================================================================
+	///Renders a whole frame with the multithreaded SoftwareRenderer
+	///=========================================================================
+	void renderSoftware();
+
+	///=========================================================================
+	///Renders an idle frame (see paintIdle) with the SoftwareRenderer
+	///=========================================================================
+	void renderSoftwareIdle();
+}
@@ -0,0 +1,37 @@
+///=============================================================================
+///@file    TrafficBenchmark.java
+///@brief   Cost of a simulation tick as the number of opponents grows.
+///=============================================================================
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficBenchmark
+{
+	//no traffic, then the smallest and the largest grid we race against
+	@Param({"0", "20", "100"})
+	int opponents;
+
+	private TrafficOps m_Traffic;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		m_Traffic = Fixtures.create("TrafficFixture", TrafficOps.class);
+		m_Traffic.setUp(opponents);
+	}
+
+	@Benchmark
+	public int step()
+	{
+		return m_Traffic.step();
+	}
+}
@@ -0,0 +1,21 @@
+///=============================================================================
+///@file    TrafficOps.java
+///@brief   Simulation ticks benchmarked with opponent traffic.
+///=============================================================================
+
+package bench;
+
+public interface TrafficOps
+{
+	///=========================================================================
+	///Starts a race
+	///@param int opponents	number of opponent cars
+	///=========================================================================
+	void setUp(int opponents);
+
+	///=========================================================================
+	///Steps the race by one tick (the player driven by an autopilot)
+	///@return the player's speed, so the tick can't be optimized away
+	///=========================================================================
+	int step();
+}
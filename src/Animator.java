@@ -9,30 +9,133 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.*;
-import java.util.Random;
+import java.io.*;
 
 class Animator extends Canvas implements Runnable 
 {
-	private Thread m_Animator;
-	private boolean m_Playing;
+	final private long MAX_FRAME_TIME = 250000000L;		//longest frame we catch up on (ns)
+	final private int INPUT_CAPACITY = 64;				//key events waiting for a tick
+
+	private Thread m_Animator;			//runs the simulation (see run)
+	private Thread m_Renderer;			//draws the frames (see renderLoop)
+	private volatile boolean m_Playing;
+	private boolean m_ActiveRendering;	//render from run() instead of repaint()
+	private BufferStrategy m_Strategy;	//page-flipping/volatile back buffers
+	private BufferedImage m_BackBuffer;	//reusable back buffer, keeps the last frame
+	private int[] m_BackPixels;			//the back buffer's pixels
+	private int m_Width;				//size of the canvas; frames are drawn at
+	private int m_Height;				//PolePosition.APP_WIDTH x APP_HEIGHT
+	private BufferedImage m_Frame;		//a frame before it is scaled to the canvas
+	private int[] m_FramePixels;		//(when their sizes differ), and its pixels
+	private int[] m_Columns;			//frame column of each canvas column, or null
+	private int m_TickRate;				//fixed simulation rate (Hz)
+	private int m_FrameRate;			//render rate (Hz), 0 = as fast as possible
+	private volatile SnapshotBuffer m_Snapshots;	//the states to draw, from the simulation thread
+	private boolean m_SoftwareRendering;	//compose frames with m_Software
+	private SoftwareRenderer m_Software;
+	private String m_TrackFile;			//circuit to drive, null for the built-in one
+	private int m_OpponentCount;		//number of opponent cars
+	private Simulation m_Simulation;	//the game rules & state
 	private Player m_Player;
 	private Landscape m_Landscape;
 	private Road m_Road;
-	private Banner m_Banner;
+	private Scenery m_Scenery;
+	private Opponents m_Opponents;
 	private HUD m_HUD;
-	private Color m_BorderStart;	//used to animate the road
-	private Color m_DivisionStart;	//used to animate the road
-	private int roadYPos;
+	private Drawable[] m_Drawables;		//everything drawn, submitted in this order
+	private RenderQueue m_Queue;
+	private InputQueue m_Input;			//keys, from the event thread to the ticks
+	private long m_InputTime;			//earliest input not on screen yet (InputQueue.NONE)
+	private volatile long m_ShownInput;	//the last m_InputTime a frame showed
+	private volatile long m_InputLatency;	//input to photon of the last input shown (ns)
+	private FrameStats m_Stats;			//how long the stages of ticks and frames take
+	private StatsOverlay m_Overlay;
+	private QualityGovernor m_Governor;	//lowers the quality while frames are too slow
+	private int m_Quality;				//the level the drawables are set to, -1 for none yet
+	private volatile boolean m_ShowStats;	//draw m_Overlay (F3)
+	private String m_StatsFile;			//CSV the timings are written to, or null
+	private long m_StatsPeriod;			//ns between two writes
+	private PrintWriter m_StatsOut;
+	private long m_Start;				//System.nanoTime() the game started at
+	private long m_NextTickStats;		//when the simulation thread writes its timings next
+	private long m_NextFrameStats;		//when the thread drawing writes its timings next
+	private String m_RecordFile;		//input log to write, or null
+	private String m_ReplayFile;		//input log to replay, or null
+	private InputRecorder m_Recorder;
+	private InputPlayer m_Replay;		//drives the game instead of the keys
 
 	///=========================================================================
 	///Default constructor
 	///=========================================================================
 	public Animator() 
+	{
+		this(new Settings());
+	}
+
+	///=========================================================================
+	///Constructor
+	///@param Settings settings	how to run the game (see Settings)
+	///=========================================================================
+	public Animator(Settings settings) 
+	{
+		this(settings, true);
+	}
+
+	///=========================================================================
+	///Constructor
+	///@param Settings settings	see above
+	///@param boolean start		false initializes the game but starts no
+	///							thread; the owner steps the simulation and
+	///							paints frames on demand (e.g. benchmarks)
+	///=========================================================================
+	Animator(Settings settings, boolean start) 
 	{
 		m_Animator = null;
+		m_Renderer = null;
 		m_Playing = false;
-
-		start();
+		m_ActiveRendering = settings.activeRendering;
+		m_Strategy = null;
+		m_BackBuffer = null;
+		m_BackPixels = null;
+		m_Width = settings.width;
+		m_Height = settings.height;
+		m_Frame = null;
+		m_FramePixels = null;
+		m_Columns = null;
+		m_TickRate = (settings.tickRate > 0) ? settings.tickRate : Settings.DEFAULT_TICK_RATE;
+		m_FrameRate = (settings.frameRate > 0) ? settings.frameRate : 0;
+		m_SoftwareRendering = settings.softwareRendering;
+		m_TrackFile = settings.trackFile;
+		m_OpponentCount = settings.opponents;
+		m_Software = null;
+		m_Input = new InputQueue(INPUT_CAPACITY);
+		m_InputTime = InputQueue.NONE;
+		m_ShownInput = InputQueue.NONE;
+		m_InputLatency = 0;
+		m_ShowStats = false;
+		m_StatsFile = settings.statsFile;
+		m_StatsPeriod = settings.statsPeriod * 1000000000L;
+		m_StatsOut = null;
+		m_Governor = new QualityGovernor(settings.quality);
+		m_Quality = -1;
+		m_RecordFile = settings.recordFile;
+		m_ReplayFile = settings.replayFile;
+		m_Recorder = null;
+		m_Replay = null;
+
+		//in active mode we do the painting ourselves; ignore OS paint requests
+		setIgnoreRepaint(m_ActiveRendering);
+
+		if (start) 
+		{
+			start();
+		} 
+		else 
+		{
+			//a game in progress, just not driven by us
+			init();
+			m_Playing = true;
+		}
 	}
 
 	///=========================================================================
@@ -42,9 +145,10 @@ class Animator extends Canvas implements Runnable
 	{
 		if (m_Animator == null && !m_Playing) 
 		{
+			//set the flag first, otherwise run() might see it still false
+			m_Playing = true;
 			m_Animator = new Thread(this);
 			m_Animator.start();
-			m_Playing = true;
 		}
 	}
 
@@ -61,6 +165,45 @@ class Animator extends Canvas implements Runnable
 	///=========================================================================
 	private void init() 
 	{
+		//setup the game; a replay brings its own circuit, opponents & rate
+		if (m_ReplayFile != null) 
+		{
+			try 
+			{
+				m_Replay = new InputPlayer(new File(m_ReplayFile));
+				m_TrackFile = m_Replay.getTrackFile();
+				m_TickRate = m_Replay.getTickRate();
+			} 
+			catch (IOException ex) 
+			{
+				System.err.println("Could not replay:" + m_ReplayFile + " " + ex.toString());
+			}
+		}
+
+		Track track = Track.open(m_TrackFile);
+		long seed = System.currentTimeMillis();
+		if (m_Replay != null) 
+		{
+			m_Simulation = m_Replay.createSimulation(track);
+		} 
+		else 
+		{
+			m_Simulation = new Simulation(track, seed, m_OpponentCount, m_TickRate);
+		}
+
+		if (m_RecordFile != null && m_Replay == null) 
+		{
+			try 
+			{
+				m_Recorder = new InputRecorder(new File(m_RecordFile), seed, m_OpponentCount, m_TickRate, m_TrackFile);
+				closeRecorderOnExit();
+			} 
+			catch (IOException ex) 
+			{
+				System.err.println("Could not record:" + m_RecordFile + " " + ex.toString());
+			}
+		}
+
 		//setup player
 		m_Player = new Player(9);
 		m_Player.addFrame(1, "images/car1.png");
@@ -72,397 +215,713 @@ class Animator extends Canvas implements Runnable
 		m_Player.addFrame(7, "images/car7.png");
 		m_Player.addFrame(8, "images/car8.png");
 		m_Player.addFrame(9, "images/car9.png");
-		m_Player.setX(PolePosition.APP_WIDTH / 2 - Player.WIDTH / 2);
-		m_Player.setY(PolePosition.APP_HEIGHT - Player.HEIGTH - 10);
+		m_Player.setX(PolePosition.APP_WIDTH / 2 - PolePosition.scaleX(Player.WIDTH) / 2);
+		m_Player.setY(PolePosition.APP_HEIGHT - PolePosition.scaleY(Player.HEIGTH + 10));
 		m_Player.on();
 
 		//setup landscape
 		m_Landscape = new Landscape();
 
 		//setup road
-		m_Road = new Road();
-		m_BorderStart = Color.WHITE;
-		m_DivisionStart = Color.WHITE;
-		m_Road.setBorderChange(30);
-		m_Road.setBorderColor(m_BorderStart);
-		m_Road.setDivisionColor(m_DivisionStart);
-		//m_Road.initBanners();
+		m_Road = new Road(track);
 		
-		//setup banner
-		m_Banner = new Banner(2);
-		m_Banner.addFrame(1, "images/banner1.png");
-		m_Banner.addFrame(2, "images/banner2.png");
-		m_Banner.setScale(0);
-		m_Banner.off();
+		//setup roadside objects
+		m_Scenery = new Scenery(track, m_Road);
+		m_Scenery.addFrame(Roadside.TREE, "images/tree.png");
+		m_Scenery.addFrame(Roadside.SIGN_LEFT, "images/sign_left.png");
+		m_Scenery.addFrame(Roadside.SIGN_RIGHT, "images/sign_right.png");
+		m_Scenery.addFrame(Roadside.BANNER1, "images/banner1.png");
+		m_Scenery.addFrame(Roadside.BANNER2, "images/banner2.png");
+
+		//setup opponents
+		m_Opponents = new Opponents(track, m_Road);
+		m_Opponents.addFrame(1, "images/car1.png");
 		
 		//setup HUD
 		m_HUD = new HUD();
+
+		//the order only matters for things at the same depth
+		m_Drawables = new Drawable[] { m_Landscape, m_Road, m_Scenery, m_Opponents, m_Player, m_HUD };
+		m_Queue = new RenderQueue();
+
+		//time everything
+		m_Stats = new FrameStats(new String[] { "landscape", "road", "roadside", "opponents", "player", "hud" });
+		m_Simulation.setStats(m_Stats);
+		m_Queue.setStats(m_Stats, m_Drawables);
+		m_Overlay = new StatsOverlay(m_Stats, m_Governor);
+		m_Start = System.nanoTime();
+		m_NextTickStats = m_Start + m_StatsPeriod;
+		m_NextFrameStats = m_NextTickStats;
+		if (m_StatsFile != null) 
+		{
+			try 
+			{
+				m_StatsOut = new PrintWriter(new BufferedWriter(new FileWriter(m_StatsFile)));
+				FrameStats.writeCsvHeader(m_StatsOut);
+			} 
+			catch (IOException ex) 
+			{
+				System.err.println("Could not write timings:" + m_StatsFile + " " + ex.toString());
+			}
+		}
+
+		if (m_SoftwareRendering) 
+		{
+			m_Software = new SoftwareRenderer(m_Drawables);
+		}
+
+		//frames are drawn at the internal resolution, then scaled
+		if (m_Width != PolePosition.APP_WIDTH || m_Height != PolePosition.APP_HEIGHT) 
+		{
+			m_Columns = Raster.getColumns(m_Width, PolePosition.APP_WIDTH);
+			if (m_Software == null) 
+			{
+				m_Frame = new BufferedImage(PolePosition.APP_WIDTH, PolePosition.APP_HEIGHT, BufferedImage.TYPE_INT_RGB);
+				m_FramePixels = ((DataBufferInt) m_Frame.getRaster().getDataBuffer()).getData();
+			}
+		}
+
+		//the first frames show the start of the race
+		m_Snapshots = new SnapshotBuffer(m_Simulation.getState().opponents);
+		publish();
 	}
 
 	///=========================================================================
-	///Animates the landscape layer
+	///The game ends when the window closes (System.exit): stop the loop, let
+	///the tick in progress finish, then end the log with the race as it is
 	///=========================================================================
-	private void updateLandscape() 
+	private void closeRecorderOnExit() 
 	{
-		//scroll background only when player is accelerating 
-		if (!m_Player.isAccelerating()) 
-		{
-			return;
-		}
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() 
+			{
+				Animator.this.stop();
+				try 
+				{
+					if (m_Animator != null) 
+					{
+						m_Animator.join(1000);
+					}
+					m_Recorder.close(m_Simulation.getState());
+				} 
+				catch (Exception ex) 
+				{
+					System.err.println("Could not record:" + m_RecordFile + " " + ex.toString());
+				}
+			}
+		});
+	}
+
+	///=========================================================================
+	///getSimulation
+	///@return the game rules & state being animated
+	///=========================================================================
+	Simulation getSimulation() 
+	{
+		return m_Simulation;
+	}
 
-		int xPos = m_Road.getOffset();
-		m_Landscape.scroll(-xPos);
+	///=========================================================================
+	///getInputLatency
+	///@return how long the last input took to reach the screen (ns): from the
+	///		   key event to the frame showing its first tick
+	///=========================================================================
+	long getInputLatency() 
+	{
+		return m_InputLatency;
 	}
 
 	///=========================================================================
-	///To animate the road we could cycle the color palette or use a simple
-	///trick changing the start (y-coord) at which the road-border changes
-	///its color and achieve a similar effect. Subsequently we change the color
-	///every 30 scan lines, for instance, but the start will be pushed down
+	///Advances the game by one fixed simulation step, after applying the
+	///input of the step: the keys', or the replay's, which overrides them
+	///@param long end	System.nanoTime() at which the step ends
 	///=========================================================================
-	private void updateRoad() 
+	private void tick(long end) 
 	{
-		int xPos, y, delta;
-
-		y = m_Road.getBorderChange();
-
-		//update border change & scroll (i.e. animate) only when player is accelerating
-		if (m_Player.getSpeed() > 1) 
-		{
-			//animation speed is a function of player's speed
-			y -= m_Player.getSpeed() / 10;
-
-			//the road is automatically scrolled along with curves in the
-			//same direction (again, as a function of player's speed)
-			//we first clamp the speed to [0,2], multiply by -1 and 
-			//finally add a dela (e.g. 3) to get clamped values of [3, 1]
-			//that is, on MAX speed we divide by 1 (i.e. max scroll); on
-			//MIN speed we divide by 3 (i.e. small scroll)
-			delta = m_Player.getSpeed() / (Player.MAX_SPEED / 2);
-			delta *= -1;
-			delta += 3;
-			xPos = m_Road.getOffset();
-			m_Road.setScroll(xPos / delta);
+		long start = System.nanoTime();
+		long time = m_Input.drain(m_Simulation, end);
+		if (m_InputTime == m_ShownInput) 
+		{
+			m_InputTime = InputQueue.NONE;
+		}
+		if (m_InputTime == InputQueue.NONE) 
+		{
+			m_InputTime = time;
 		}
 
-		if (y < 0) 
+		try 
 		{
-			m_BorderStart = (m_Road.getBorderColor() == Color.WHITE) ? Color.RED : Color.WHITE;
-			m_DivisionStart = (m_Road.getDivisionColor() == Color.WHITE) ? PolePosition.ROAD_COLOR : Color.WHITE;
-			y = 30;
+			if (m_Replay != null && !m_Replay.next(m_Simulation)) 
+			{
+				System.out.println(m_Replay.verify(m_Simulation.getState()));
+				m_Replay = null;
+				stop();
+				return;
+			}
+
+			if (m_Recorder != null) 
+			{
+				m_Recorder.record(m_Simulation.getState());
+			}
+		} 
+		catch (IOException ex) 
+		{
+			System.err.println("Input log:" + ex.toString());
+			m_Replay = null;
+			m_Recorder = null;
 		}
 
-		m_Road.setBorderColor(m_BorderStart);
-		m_Road.setDivisionColor(m_DivisionStart);
-		m_Road.setBorderChange(y);
+		m_Simulation.step();
+		m_Stats.record(FrameStats.TICK, System.nanoTime() - start);
+	}
 
-		//update distance as a function of player's speed
-		delta = m_Player.getSpeed() / Player.MAX_SPEED;
-		m_Road.setDistance(m_Road.getDistance() + delta);
+	///=========================================================================
+	///Publishes the last two states of the simulation for the frames to draw
+	///@param long time	System.nanoTime() the current state stands for
+	///=========================================================================
+	private void publish(long time) 
+	{
+		m_Snapshots.getBack().set(m_Simulation, time, m_InputTime);
+		m_Snapshots.publish();
 	}
 
 	///=========================================================================
-	///Animates the player's car
+	///Same as above, for a state that stands for now; the owner of a game not
+	///driven by us calls it after changing the state
 	///=========================================================================
-	private void updatePlayer() 
+	void publish() 
 	{
-		//update speed
-		if (m_Player.isAccelerating()) 
-		{
-			m_Player.setSpeed(m_Player.getSpeed() + Player.ACCEL);
-		} 
-		else 
+		publish(System.nanoTime());
+	}
+
+	///=========================================================================
+	///Writes the timings of some stages since their last write as CSV rows
+	///and starts them over, once every m_StatsPeriod. Each thread writes the
+	///stages it records itself, so no histogram is read or reset while
+	///another thread records into it; the rows are stamped with the end of
+	///the period, the same for both threads.
+	///@param long now		System.nanoTime()
+	///@param long next		when the stages are due
+	///@param int first		the first stage
+	///@param int end		the stage after the last
+	///@return when they are due next
+	///=========================================================================
+	private long writeStats(long now, long next, int first, int end) 
+	{
+		if (m_StatsOut == null || now - next < 0) 
 		{
-			m_Player.setSpeed(m_Player.getSpeed() - Player.ACCEL);
+			return next;
 		}
 
-		if (m_Player.isBraking()) 
+		m_Stats.writeCsv(m_StatsOut, (next - m_Start) / 1e9, first, end);
+		m_Stats.reset(first, end);
+		while (now - next >= 0) 
 		{
-			m_Player.setSpeed(m_Player.getSpeed() - Player.BRAKE);
+			next += m_StatsPeriod;
 		}
+		return next;
+	}
 
-		//driving on grass is slower than on asphalt
-		int pos = m_Road.getScroll();
-		int half_road = PolePosition.APP_WIDTH / 2;
-		int half_player = Player.WIDTH / 2;
-		if (pos < (-half_road + half_player) || pos > (half_road - half_player)) 
+	///=========================================================================
+	///Implements method run() of interface Runnable
+	///The game logic runs in fixed steps of 1/tickRate seconds on this thread
+	///while another one draws the frames (see renderLoop): elapsed time is
+	///poured into an accumulator and as many ticks as fit are consumed, then
+	///the last two states are published for the frames to interpolate. What
+	///is left over tells how long ago the current state was due, and how long
+	///to wait for the next tick.
+	///=========================================================================
+	public void run() 
+	{
+		init();
+
+		m_Renderer = new Thread(new Runnable() {
+			public void run() 
+			{
+				renderLoop();
+			}
+		}, "Renderer");
+		m_Renderer.start();
+
+		long tickTime = 1000000000L / m_TickRate;
+		long accumulator = 0;
+		long previous = System.nanoTime();
+
+		while (m_Playing) 
 		{
-			m_Player.setSpeed(m_Player.getSpeed() - 10);
+			long now = System.nanoTime();
+			long elapsed = now - previous;
+			previous = now;
+
+			//after a long stall (e.g. the window was dragged) we'd rather
+			//slow down for a moment than run dozens of ticks in a row
+			if (elapsed > MAX_FRAME_TIME) 
+			{
+				elapsed = MAX_FRAME_TIME;
+			}
+
+			accumulator += elapsed;
+			if (accumulator >= tickTime) 
+			{
+				while (accumulator >= tickTime) 
+				{
+					//the step catches up to now - accumulator + tickTime
+					tick(now - accumulator + tickTime);
+					accumulator -= tickTime;
+				}
+				publish(now - accumulator);
+			}
+
+			m_NextTickStats = writeStats(now, m_NextTickStats, FrameStats.TICK, FrameStats.FRAME);
+
+			//wait for the next tick
+			long wait = tickTime - accumulator - (System.nanoTime() - now);
+			if (wait > 0) 
+			{
+				try 
+				{
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} 
+				catch (InterruptedException ex) 
+				{
+					System.out.println(ex.toString());
+				}
+			}
 		}
+	}
 
-		//check if player has stopped
-		if (m_Player.getSpeed() < 1) 
+	///=========================================================================
+	///The render thread: draws the latest snapshot published at the frame
+	///rate (in passive mode it asks the event thread to), until the game ends.
+	///It only ever reads snapshots, so it can draw a frame while the next
+	///tick is simulated.
+	///=========================================================================
+	private void renderLoop() 
+	{
+		long frameTime = (m_FrameRate > 0) ? 1000000000L / m_FrameRate : 0;
+		long nextFrame = System.nanoTime();
+
+		while (m_Playing) 
 		{
-			if (m_Player.isBraking()) 
+			//update screen
+			if (m_ActiveRendering) 
 			{
-				m_Player.selFrame(Player.BRAKE_NONE);
+				renderFrame();
+				m_NextFrameStats = writeStats(System.nanoTime(), m_NextFrameStats, FrameStats.FRAME, m_Stats.getStages());
 			} 
 			else 
 			{
-				m_Player.selFrame(Player.STEER_NONE);
+				//the event thread draws, and writes the timings (see paint)
+				repaint();
 			}
-			return;
-		}
 
-		//change steer direction
-		int steerDirection = m_Player.getSteerDirection();
-		int frame = m_Player.getFrame();
-		switch (steerDirection) 
-		{
-			//=========================
-			//STEER LEFT
-			//=========================
-			case Player.STEER_LEFT:
-				if (m_Player.isBraking()) 
+			//wait for the next frame
+			if (frameTime == 0) 
+			{
+				Thread.yield();
+				continue;
+			}
+
+			nextFrame += frameTime;
+			long wait = nextFrame - System.nanoTime();
+			if (wait > 0) 
+			{
+				try 
 				{
-					m_Player.selFrame(Player.BRAKE_LEFT);
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
 				} 
-				else 
+				catch (InterruptedException ex) 
 				{
-					//animate the tires
-					if (frame == Player.STEER_LEFT) 
-					{
-						m_Player.selFrame(Player.STEER_LEFT2);
-					} 
-					else 
-					{
-						m_Player.selFrame(Player.STEER_LEFT);
-					}
+					System.out.println(ex.toString());
 				}
-				m_Road.setScroll(Road.STEER_LEFT);
-				break;
+			} 
+			else if (wait < -MAX_FRAME_TIME) 
+			{
+				//we are way behind schedule; don't try to make up for it
+				nextFrame = System.nanoTime();
+			}
+		}
+	}
 
-			//=========================
-			//STEER RIGHT
-			//=========================
-			case Player.STEER_RIGHT:
-				if (m_Player.isBraking()) 
-				{
-					m_Player.selFrame(Player.BRAKE_RIGHT);
-				} 
-				else 
+	///=========================================================================
+	///Handles keyboard events within the canvas
+	///Called on the event thread: the key is only queued, with the time it
+	///was pressed at; the next tick applies it (see InputQueue)
+	///@param int key	the key that was pressed
+	///=========================================================================
+	public void onKeyPressed(int key) 
+	{
+		onKey(key, true);
+	}
+
+	///=========================================================================
+	///Handles keyboard events within the canvas
+	///@param int key	the key that was released
+	///=========================================================================
+	public void onKeyReleased(int key) 
+	{
+		onKey(key, false);
+	}
+
+	private void onKey(int key, boolean pressed) 
+	{
+		long time = System.nanoTime();
+
+		switch (key) 
+		{
+			//not game input: shows/hides the timings right away
+			case KeyEvent.VK_F3:
+				if (pressed) 
 				{
-					//animate the tires
-					if (frame == Player.STEER_RIGHT) 
-					{
-						m_Player.selFrame(Player.STEER_RIGHT2);
-					} 
-					else 
-					{
-						m_Player.selFrame(Player.STEER_RIGHT);
-					}
+					m_ShowStats = !m_ShowStats;
 				}
-				m_Road.setScroll(Road.STEER_RIGHT);
 				break;
 
-			//=========================
-			//STEER NONE
-			//=========================
-			case Player.STEER_NONE:
-				if (m_Player.isBraking()) 
-				{
-					m_Player.selFrame(Player.BRAKE_NONE);
-				} 
-				else 
-				{
-					//animate the tires
-					if (m_Player.getFrame() == Player.STEER_NONE) 
-					{
-						m_Player.selFrame(Player.STEER_NONE2);
-					} 
-					else 
-					{
-						m_Player.selFrame(Player.STEER_NONE);
-					}
-				}
+			case KeyEvent.VK_LEFT:
+				m_Input.push(InputQueue.STEER_LEFT, pressed, time);
+				break;
+
+			case KeyEvent.VK_RIGHT:
+				m_Input.push(InputQueue.STEER_RIGHT, pressed, time);
+				break;
+
+			case KeyEvent.VK_A:
+				m_Input.push(InputQueue.GAS, pressed, time);
+				break;
+
+			case KeyEvent.VK_Z:
+				m_Input.push(InputQueue.BRAKE, pressed, time);
 				break;
 		}
 	}
-	
-	private void updateBanner()
-	{		
-		if(!m_Banner.isActive())
-		{
-			//draw a banner every 100Km
-			if ( (m_Road.getDistance() >= 50 && m_Road.getDistance() <= 60) ||
-				 (m_Road.getDistance() >= 150 && m_Road.getDistance() <= 160) )
+
+	///=========================================================================
+	///Renders one frame in active mode. The BufferStrategy keeps its back
+	///buffers (VolatileImages on accelerated pipelines) alive between frames,
+	///so nothing is allocated here; if the video memory holding them is lost
+	///(e.g. mode switch, screen saver) we restore and draw the frame again.
+	///What the strategy's buffers show after a flip is undefined, so the
+	///layers are drawn into our own back buffer, which keeps the last frame:
+	///only the bands that changed are drawn, and the whole buffer is copied
+	///to the strategy once per frame.
+	///=========================================================================
+	private void renderFrame() 
+	{
+		//the strategy can only be created once the canvas is on screen
+		if (m_Strategy == null) 
+		{
+			if (!isDisplayable()) 
 			{
-				Random r = new Random();
-				int position = r.nextInt(2);
-				m_Banner.on();
-				m_Banner.selFrame(r.nextInt(2)+1);
-				m_Banner.setPosition(position);
-				roadYPos = 0;
+				return;
 			}
+
+			createBufferStrategy(2);
+			m_Strategy = getBufferStrategy();
 		}
 
-		//animate only when banner is active
-		if (m_Banner.isActive() && m_Player.getSpeed()>1) 
-		{
-			//update banner scale according to y-position
-			m_Banner.setScale(m_Banner.getScale() + 2);
-			m_Banner.setScaledW(m_Banner.getW() * m_Banner.getScale() / 100);
-			m_Banner.setScaledH(m_Banner.getH() * m_Banner.getScale() / 100);
+		long start = System.nanoTime();
+		long present = start;
+		Snapshot snapshot = m_Snapshots.read();
 
-			//get new banner x-position
-			int invertYPos = PolePosition.ROAD_HEIGHT - roadYPos;
-			float deltaZ = (invertYPos) * Road.CONST_Z;
-			int deltaS = m_Road.getOffset() * m_Road.getScale(invertYPos-1);
-			if(m_Banner.getPosition() == Banner.POS_LEFT)
+		//the software and low-res frames keep their own pixels
+		boolean direct = m_Software == null && m_Frame == null;
+		if (direct) 
+		{
+			createBackBuffer();
+			Graphics2D bg = m_BackBuffer.createGraphics();
+			try 
 			{
-				m_Banner.setX(deltaS + m_Road.getScroll() + (int)deltaZ - m_Banner.getScaledW());
-			}
-			else
+				render(bg, m_BackPixels, snapshot);
+			} 
+			finally 
 			{
-				m_Banner.setX(PolePosition.APP_WIDTH + deltaS + m_Road.getScroll() - (int)deltaZ);
+				bg.dispose();
 			}
+		}
 
-			//update banner y-position
-			int yTemp = PolePosition.SKY_HEIGHT + roadYPos;
-			if(m_Banner.getScale() > 150)
-			{
-				m_Banner.setY(yTemp + 10 - m_Banner.getScaledH());
-				roadYPos+=10;
-			}
-			else
-			{
-				m_Banner.setY(yTemp + 1 - m_Banner.getScaledH());
-				roadYPos+=1;
-			}
-			
-			if(roadYPos >= PolePosition.ROAD_HEIGHT)
+		do 
+		{
+			do 
 			{
-				m_Banner.off();
-				m_Banner.setScale(0);
-			}
+				Graphics2D g2 = (Graphics2D) m_Strategy.getDrawGraphics();
+				try 
+				{
+					if (direct) 
+					{
+						g2.drawImage(m_BackBuffer, 0, 0, null);
+					} 
+					else 
+					{
+						render(g2, null, snapshot);
+					}
+				} 
+				finally 
+				{
+					g2.dispose();
+				}
+			} 
+			while (m_Strategy.contentsRestored());
+
+			present = System.nanoTime();
+			m_Strategy.show();
+		} 
+		while (m_Strategy.contentsLost());
+
+		//flush the pipeline so the frame is not held back by the window system
+		Toolkit.getDefaultToolkit().sync();
+
+		long end = System.nanoTime();
+		m_Stats.record(FrameStats.PRESENT, end - present);
+		m_Stats.record(FrameStats.FRAME, end - start);
+		m_Stats.endFrame();
+		m_Governor.record(end - start);
+
+		//the simulation forgets an input once a frame has shown it
+		if (snapshot.inputTime != InputQueue.NONE && snapshot.inputTime != m_ShownInput) 
+		{
+			m_InputLatency = end - snapshot.inputTime;
+			m_Stats.record(FrameStats.INPUT_LATENCY, m_InputLatency);
+			m_ShownInput = snapshot.inputTime;
 		}
 	}
 
 	///=========================================================================
-	///Implements method run() of interface Runnable
+	///Draws the whole scene (back to front) over the whole canvas
+	///@param Graphics2D g2	an awt.Graphics2D object to draw into, the size
+	///						of the canvas
+	///@param int[] pixels	the pixels behind g2 when it draws into an
+	///						m_Width wide int RGB image, null otherwise
+	///@param Snapshot snapshot	the states to draw, interpolated to now.
+	///						When the layers are drawn straight into g2 (no
+	///						software or low-res frame), g2 must draw into
+	///						m_BackBuffer: it keeps the last frame, so only
+	///						the bands that changed are drawn again
 	///=========================================================================
-	public void run() 
+	private void render(Graphics2D g2, int[] pixels, Snapshot snapshot) 
 	{
-		init();
+		float alpha = snapshot.getAlpha(System.nanoTime(), 1000000000L / m_TickRate);
+		GameState prev = snapshot.prev;
+		GameState cur = snapshot.cur;
 
-		while (m_Playing) 
+		int level = m_Governor.getLevel();
+		if (level != m_Quality) 
 		{
-			//animate landscape
-			updateLandscape();
-
-			//animate banner
-			updateBanner();
-			
-			//animate road
-			updateRoad();
-
-			//animate player's car
-			updatePlayer();
-
-			//update screen
-			repaint();
+			setQuality(level);
+		}
 
-			//sleep for a little while
+		if (m_Software != null) 
+		{
+			BufferedImage frame = m_Software.render(prev, cur, alpha);
+			if (m_Columns == null) 
+			{
+				g2.drawImage(frame, 0, 0, null);
+			} 
+			else 
+			{
+				scaleFrame(g2, pixels, frame, m_Software.getPixels());
+			}
+		} 
+		else if (m_Frame != null) 
+		{
+			Graphics2D fg = m_Frame.createGraphics();
 			try 
 			{
-				Thread.sleep(40);
+				renderLayers(fg, m_FramePixels, prev, cur, alpha);
 			} 
-			catch (InterruptedException ex) 
+			finally 
 			{
-				System.out.println(ex.toString());
+				fg.dispose();
+			}
+			scaleFrame(g2, pixels, m_Frame, m_FramePixels);
+		} 
+		else 
+		{
+			renderLayers(g2, pixels, prev, cur, alpha);
+		}
+
+		//what's drawn over the layers has to be drawn over again next
+		//frame, where they were drawn straight into g2
+		boolean direct = m_Software == null && m_Frame == null;
+
+		if (!m_Playing) 
+		{
+			g2.setColor(Color.BLACK);
+			g2.setFont(new Font("Arial", Font.BOLD, 20 * m_Height / PolePosition.BASE_HEIGHT));
+			g2.drawString("GAME OVER", m_Width / 2 - 80 * m_Width / PolePosition.BASE_WIDTH, m_Height / 2 - 10 * m_Height / PolePosition.BASE_HEIGHT);
+			if (direct) 
+			{
+				m_Queue.invalidate();
+			}
+		}
+
+		if (m_ShowStats) 
+		{
+			int bottom = m_Overlay.draw(g2, m_Width);
+			if (direct) 
+			{
+				m_Queue.invalidate(0, bottom);
 			}
 		}
 	}
 
 	///=========================================================================
-	///Handles keyboard events within the canvas
-	///@param int key	the key that was pressed
+	///Sets the drawables to a quality level (see QualityGovernor); the
+	///bands where they now look different are drawn again like any other
+	///change
+	///@param int level		the level, each leaving out more than the last
 	///=========================================================================
-	public void onKeyPressed(int key) 
+	private void setQuality(int level) 
 	{
-		switch (key) 
-		{
-			case KeyEvent.VK_LEFT:
-				m_Player.setSteerDirection(Player.STEER_LEFT);
-				break;
+		m_Scenery.setMinScale((level >= QualityGovernor.FEWER_OBJECTS) ? Scenery.FAR_SCALE : 0);
+		m_Road.setHalfScanlines(level >= QualityGovernor.HALF_ROAD);
+		m_Landscape.setVisible(level < QualityGovernor.NO_LANDSCAPE);
+		m_Quality = level;
+	}
 
-			case KeyEvent.VK_RIGHT:
-				m_Player.setSteerDirection(Player.STEER_RIGHT);
-				break;
+	///=========================================================================
+	///@return the quality level the frames are drawn at (see QualityGovernor)
+	///=========================================================================
+	int getQuality() 
+	{
+		return m_Governor.getLevel();
+	}
 
-			case KeyEvent.VK_A:
-				m_Player.accelerate();
-				break;
+	///=========================================================================
+	///Forgets what the frame shows: the next one is drawn whole (e.g. to
+	///time whole frames)
+	///=========================================================================
+	void redrawAll() 
+	{
+		m_Queue.invalidate();
+		if (m_Software != null) 
+		{
+			m_Software.invalidate();
+		}
+	}
 
-			case KeyEvent.VK_Z:
-				m_Player.brake(true);
-				break;
+	///=========================================================================
+	///Blows a frame drawn at the internal resolution up to the canvas, with
+	///nearest neighbour: straight into the canvas' pixels if we have them,
+	///otherwise as a scaled blit (which accelerated pipelines do on the GPU)
+	///@param Graphics2D g2		an awt.Graphics2D object to draw into
+	///@param int[] pixels		see render()
+	///@param BufferedImage frame	the frame
+	///@param int[] framePixels	its pixels
+	///=========================================================================
+	private void scaleFrame(Graphics2D g2, int[] pixels, BufferedImage frame, int[] framePixels) 
+	{
+		if (pixels != null) 
+		{
+			Raster.scale(pixels, m_Width, m_Height, framePixels, PolePosition.APP_WIDTH, PolePosition.APP_HEIGHT, m_Columns);
+			return;
 		}
+
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g2.drawImage(frame, 0, 0, m_Width, m_Height, null);
 	}
 
 	///=========================================================================
-	///Handles keyboard events within the canvas
-	///@param int key	the key that was released
+	///Draws the layers of the scene one after the other through Graphics2D,
+	///in the bands that changed since the last frame (see RenderQueue)
+	///@param Graphics2D g2		an awt.Graphics2D object to draw into
+	///@param int[] pixels		see render()
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
 	///=========================================================================
-	public void onKeyReleased(int key) 
+	private void renderLayers(Graphics2D g2, int[] pixels, GameState prev, GameState cur, float alpha) 
 	{
-		switch (key) 
+		//everything but the sky & grass goes through the queue: what's off
+		//screen is culled, the rest is drawn back to front (landscape, road,
+		//the things on the road from the farthest to the nearest, HUD)
+		long start = System.nanoTime();
+		m_Queue.clear();
+		for (int i = 0; i < m_Drawables.length; ++i) 
 		{
-			case KeyEvent.VK_LEFT:
-			case KeyEvent.VK_RIGHT:
-				m_Player.setSteerDirection(Player.STEER_NONE);
-				break;
+			m_Drawables[i].submit(m_Queue, prev, cur, alpha);
+		}
+		m_Queue.sort();
+		m_Queue.findDirty();
+		m_Stats.record(FrameStats.SUBMIT, System.nanoTime() - start);
+
+		//draw every run of dirty bands, clipped to its rows
+		int bands = m_Queue.getBands();
+		int b = 0;
+		while (b < bands) 
+		{
+			if (!m_Queue.isDirty(b)) 
+			{
+				++b;
+				continue;
+			}
 
-			case KeyEvent.VK_A:
-				m_Player.deaccelerate();
-				break;
+			int top = b * RenderQueue.BAND_HEIGHT;
+			while (b < bands && m_Queue.isDirty(b)) 
+			{
+				++b;
+			}
+			int bottom = Math.min(b * RenderQueue.BAND_HEIGHT, PolePosition.APP_HEIGHT);
+			g2.setClip(0, top, PolePosition.APP_WIDTH, bottom - top);
 
-			case KeyEvent.VK_Z:
-				m_Player.brake(false);
-				break;
+			//clear the rows
+			g2.setColor(PolePosition.SKY_COLOR);
+			g2.fillRect(0, 0, PolePosition.APP_WIDTH, PolePosition.SKY_HEIGHT);
+			g2.setColor(PolePosition.GRASS_COLOR);
+			g2.fillRect(0, PolePosition.SKY_HEIGHT, PolePosition.APP_WIDTH, PolePosition.ROAD_HEIGHT);
+
+			m_Queue.draw(g2, pixels, PolePosition.APP_WIDTH, top, bottom);
 		}
+		g2.setClip(null);
 	}
 
 	///=========================================================================
 	///Overrides method paint() of class Canvas.
+	///Only used by the passive (repaint-driven) path; the back buffer is
+	///created once and reused for every frame. It runs on the event thread,
+	///the only one reading snapshots then (and drawing into the back
+	///buffer).
 	///=========================================================================
 	@Override
 	public void paint(Graphics g) 
 	{
-		//create a back buffer (off-screen)
-		BufferedImage backbuffer = new BufferedImage(PolePosition.APP_WIDTH, PolePosition.APP_HEIGHT, BufferedImage.TYPE_INT_RGB);
-		Graphics2D g2 = (Graphics2D) backbuffer.getGraphics();
-
-		//clear the back buffer
-		g2.setColor(PolePosition.SKY_COLOR);
-		g2.fillRect(0, 0, PolePosition.APP_WIDTH, PolePosition.SKY_HEIGHT);
-		g2.setColor(PolePosition.GRASS_COLOR);
-		g2.fillRect(0, PolePosition.SKY_HEIGHT, PolePosition.APP_WIDTH, PolePosition.ROAD_HEIGHT);
+		//nothing to draw until the game objects exist; in active mode
+		//the render thread draws the frames itself
+		if (m_Snapshots == null || m_ActiveRendering) 
+		{
+			return;
+		}
 
-		//draw the landscape
-		m_Landscape.draw(g2);
+		createBackBuffer();
 
-		//draw the road
-		m_Road.draw(g2);
-		
-		//draw the banner
-		m_Banner.draw(g2);
+		long start = System.nanoTime();
+		Graphics2D g2 = m_BackBuffer.createGraphics();
+		render(g2, m_BackPixels, m_Snapshots.read());
+		g2.dispose();
 
-		//draw the player's car
-		m_Player.draw(g2);
-		
-		//draw the HUD
-		m_HUD.draw(g2);
+		//draw the back buffer
+		long present = System.nanoTime();
+		g.drawImage(m_BackBuffer, 0, 0, this);
+
+		long end = System.nanoTime();
+		m_Stats.record(FrameStats.PRESENT, end - present);
+		m_Stats.record(FrameStats.FRAME, end - start);
+		m_Stats.endFrame();
+		m_Governor.record(end - start);
+		m_NextFrameStats = writeStats(end, m_NextFrameStats, FrameStats.FRAME, m_Stats.getStages());
+	}
 
-		if (!m_Playing) 
+	///=========================================================================
+	///Creates the back buffer (off-screen) the first time; the road is
+	///written straight into its pixels
+	///=========================================================================
+	private void createBackBuffer() 
+	{
+		if (m_BackBuffer == null) 
 		{
-			g2.setColor(Color.BLACK);
-			g2.setFont(new Font("Arial", Font.BOLD, 20));
-			g2.drawString("GAME OVER", 320 - 80, 240 - 10);
+			m_BackBuffer = new BufferedImage(m_Width, m_Height, BufferedImage.TYPE_INT_RGB);
+			m_BackPixels = ((DataBufferInt) m_BackBuffer.getRaster().getDataBuffer()).getData();
 		}
-
-		//draw the back buffer
-		g.drawImage(backbuffer, 0, 0, this);
 	}
 
 	///=========================================================================
@@ -0,0 +1,421 @@
+///=============================================================================
+///@file    BatchSimulation.java
+///@brief   Many independent races stepped in lockstep, for training agents.
+///=============================================================================
+
+import java.util.concurrent.*;
+
+///=============================================================================
+///The player's rules of Simulation (updateRoad, updatePlayer), for any number
+///of races at once. Each race is an index into plain arrays, one array per
+///field (speed, distance, laps, scroll, steering), instead of a GameState
+///each: a step walks the arrays front to back, so it runs out of the cache
+///and the JIT can keep everything in registers. What only matters on screen
+///(the landscape, the border stripes, the tire animation) and the opponents
+///are left out; everything else matches Simulation tick for tick.
+///
+///A step hands CHUNK races at a time to the workers of a fork/join pool.
+///Races never touch each other's slots, so the workers need no locking. The
+///tasks, the observations and the rewards are allocated once: stepping
+///allocates nothing of its own (the pool may take a few bytes to wake its
+///workers). The pool is only started for more than a chunk of races, and
+///its threads stay until close().
+///
+///The circuit is read into an array (a byte per km) in one go up front,
+///since races at different places of a track file would keep sliding its
+///window (see Track). Like Simulation this class has no AWT dependency.
+///=============================================================================
+class BatchSimulation
+{
+	//actions, or'ed together; the gas pedal is released unless pushed
+	final public static int GAS = 1;
+	final public static int BRAKE = 2;
+	final public static int LEFT = 4;		//steering left and right at once
+	final public static int RIGHT = 8;		//doesn't steer at all
+
+	//what a race looks like to its driver, OBSERVATIONS floats per race
+	final public static int SPEED = 0;			//speed / MAX_SPEED, 0 to 1
+	final public static int POSITION = 1;		//off the road center: -1 (left edge) to 1 (right edge)
+	final public static int CURVE = 2;			//curve here / MAX_OFFSET: < 0 left, > 0 right (interpolated, see Track.getCurve)
+	final public static int CURVE_AHEAD = 3;	//curve LOOKAHEAD km ahead, the same way
+	final public static int OBSERVATIONS = 4;
+
+	final public static int LOOKAHEAD = 3;		//km ahead the driver sees the curve
+	final public static int CHUNK = 1024;		//races stepped per task
+
+	final private static int HALF_ROAD = PolePosition.BASE_WIDTH / 2;
+	final private static int HALF_PLAYER = Player.WIDTH / 2;
+
+	private byte[] m_Offsets;	//the circuit's curve offsets
+	private int m_Length;		//of the circuit, km
+	private int m_Races;
+	private long m_Ticks;		//steps so far, the same for every race
+
+	//the races
+	private int[] m_Speed;		//km/h
+	private long[] m_Distance;	//km, 32.32 fixed point
+	private int[] m_Laps;
+	private int[] m_Scroll;		//base pixels off the road center
+	private int[] m_Steer;		//Player.STEER_LEFT, STEER_RIGHT or STEER_NONE
+
+	private int[] m_Actions;		//of the step in progress
+	private float[] m_Observations;	//OBSERVATIONS per race
+	private float[] m_Rewards;		//of the last step, one per race
+
+	private ForkJoinPool m_Pool;		//null for a single chunk
+	private Chunk[] m_Chunks;
+	private Step m_Step;
+
+	///=========================================================================
+	///Constructor: every race at the start line
+	///@param Track track	the circuit all the races are on
+	///@param int races		number of races
+	///=========================================================================
+	public BatchSimulation(Track track, int races)
+	{
+		m_Length = track.getLength();
+		m_Offsets = track.getOffsets();
+
+		m_Races = races;
+		m_Speed = new int[races];
+		m_Distance = new long[races];
+		m_Laps = new int[races];
+		m_Scroll = new int[races];
+		m_Steer = new int[races];
+		m_Observations = new float[races * OBSERVATIONS];
+		m_Rewards = new float[races];
+
+		m_Chunks = new Chunk[(races + CHUNK - 1) / CHUNK];
+		for (int i = 0; i < m_Chunks.length; ++i)
+		{
+			m_Chunks[i] = new Chunk(i * CHUNK, Math.min((i + 1) * CHUNK, races));
+		}
+		m_Step = new Step();
+		m_Pool = (m_Chunks.length > 1) ? new ForkJoinPool() : null;
+
+		reset();
+	}
+
+	///=========================================================================
+	///Stops the workers; the races can't be stepped any more
+	///=========================================================================
+	public void close()
+	{
+		if (m_Pool != null)
+		{
+			m_Pool.shutdown();
+			m_Pool = null;
+		}
+	}
+
+	///=========================================================================
+	///Puts every race back at the start line, standing still
+	///=========================================================================
+	public void reset()
+	{
+		for (int i = 0; i < m_Races; ++i)
+		{
+			reset(i);
+		}
+		m_Ticks = 0;
+	}
+
+	///=========================================================================
+	///Puts a race back at the start line, standing still (e.g. once its
+	///episode is over); the others go on
+	///@param int race	the race
+	///=========================================================================
+	public void reset(int race)
+	{
+		m_Speed[race] = 0;
+		m_Distance[race] = 0;
+		m_Laps[race] = 0;
+		m_Scroll[race] = 0;
+		m_Steer[race] = Player.STEER_NONE;
+		m_Rewards[race] = 0;
+		observe(race);
+	}
+
+	///=========================================================================
+	///Advances every race by one tick
+	///@param int[] actions		what each race's driver does this tick (GAS,
+	///							BRAKE...), one per race
+	///=========================================================================
+	public void step(int[] actions)
+	{
+		m_Actions = actions;
+
+		//a single chunk isn't worth handing to another thread
+		if (m_Chunks.length == 1)
+		{
+			step(0, m_Races);
+		}
+		else
+		{
+			m_Step.reinitialize();
+			m_Pool.invoke(m_Step);
+		}
+
+		m_Actions = null;
+		m_Ticks++;
+	}
+
+	///=========================================================================
+	///Advances the races [first, last) by one tick
+	///=========================================================================
+	private void step(int first, int last)
+	{
+		int[] actions = m_Actions;
+		for (int i = first; i < last; ++i)
+		{
+			stepRace(i, actions[i]);
+			observe(i);
+		}
+	}
+
+	///=========================================================================
+	///Advances a race by one tick: the road first (Simulation.updateRoad),
+	///then the player (Simulation.updatePlayer)
+	///@param int i			the race
+	///@param int action	what its driver does
+	///=========================================================================
+	private void stepRace(int i, int action)
+	{
+		int speed = m_Speed[i];
+		long distance = m_Distance[i];
+		int scroll = m_Scroll[i];
+
+		int steer = Player.STEER_NONE;
+		if ((action & (LEFT | RIGHT)) == LEFT)
+		{
+			steer = Player.STEER_LEFT;
+		}
+		else if ((action & (LEFT | RIGHT)) == RIGHT)
+		{
+			steer = Player.STEER_RIGHT;
+		}
+
+		//curves push the car outwards, harder the faster it goes
+		if (speed > 1)
+		{
+			scroll = clampScroll(scroll + FixedPoint.Round(getCurve(distance)) / (3 - speed / (Player.MAX_SPEED / 2)));
+		}
+
+		//a km per tick at top speed: the races are stepped at
+		//Simulation.BASE_TICK_RATE (see Simulation.getAdvance)
+		distance += (long) speed * FixedPoint.FP_LONG_ONE / Player.MAX_SPEED;
+		if (distance >= FixedPoint.LongFromInt(m_Length))
+		{
+			distance -= FixedPoint.LongFromInt(m_Length);
+			m_Laps[i]++;
+		}
+
+		//gas, brake, and the grass slows us down
+		speed = setSpeed(speed, ((action & GAS) != 0) ? speed + Player.ACCEL : speed - Player.ACCEL);
+		if ((action & BRAKE) != 0)
+		{
+			speed = setSpeed(speed, speed - Player.BRAKE);
+		}
+		if (scroll < -HALF_ROAD + HALF_PLAYER || scroll > HALF_ROAD - HALF_PLAYER)
+		{
+			speed = setSpeed(speed, speed - 10);
+		}
+
+		//a car standing still doesn't steer
+		if (speed >= 1)
+		{
+			if (steer == Player.STEER_LEFT)
+			{
+				scroll = clampScroll(scroll + Road.STEER_LEFT);
+			}
+			else if (steer == Player.STEER_RIGHT)
+			{
+				scroll = clampScroll(scroll + Road.STEER_RIGHT);
+			}
+		}
+
+		m_Speed[i] = speed;
+		m_Distance[i] = distance;
+		m_Scroll[i] = scroll;
+		m_Steer[i] = steer;
+		m_Rewards[i] = (float) speed / Player.MAX_SPEED;
+	}
+
+	///=========================================================================
+	///The speed after a change, the way Simulation.setSpeed takes it: capped
+	///at MAX_SPEED, and a change below 0 is ignored
+	///=========================================================================
+	private static int setSpeed(int speed, int wanted)
+	{
+		if (wanted > Player.MAX_SPEED)
+		{
+			return Player.MAX_SPEED;
+		}
+
+		return (wanted < 0) ? speed : wanted;
+	}
+
+	///=========================================================================
+	///The scroll kept within half a road width of the center (see
+	///Simulation.scrollRoad)
+	///=========================================================================
+	private static int clampScroll(int scroll)
+	{
+		return Math.max(-HALF_ROAD, Math.min(scroll, HALF_ROAD));
+	}
+
+	///=========================================================================
+	///The curve at a position (see Track.getCurve), from our copy
+	///@param long position	32.32 km
+	///@return the curve, 16.16
+	///=========================================================================
+	private int getCurve(long position)
+	{
+		int segment = FixedPoint.LongToInt(position);
+		int next = (segment + 1 < m_Length) ? segment + 1 : 0;
+		return Track.getCurve(m_Offsets[segment], m_Offsets[next], position);
+	}
+
+	///=========================================================================
+	///Writes what a race looks like now into the observations
+	///=========================================================================
+	private void observe(int i)
+	{
+		long distance = m_Distance[i];
+		long ahead = distance + FixedPoint.LongFromInt(LOOKAHEAD);
+		long length = FixedPoint.LongFromInt(m_Length);
+		if (ahead >= length)
+		{
+			ahead %= length;
+		}
+
+		int o = i * OBSERVATIONS;
+		m_Observations[o + SPEED] = (float) m_Speed[i] / Player.MAX_SPEED;
+		m_Observations[o + POSITION] = (float) m_Scroll[i] / HALF_ROAD;
+		m_Observations[o + CURVE] = (float) getCurve(distance) / FixedPoint.FromInt(Track.MAX_OFFSET);
+		m_Observations[o + CURVE_AHEAD] = (float) getCurve(ahead) / FixedPoint.FromInt(Track.MAX_OFFSET);
+	}
+
+	///=========================================================================
+	///@return the number of races
+	///=========================================================================
+	public int getRaces()
+	{
+		return m_Races;
+	}
+
+	///=========================================================================
+	///@return the steps so far (since the last reset of every race)
+	///=========================================================================
+	public long getTicks()
+	{
+		return m_Ticks;
+	}
+
+	///=========================================================================
+	///@return what every race looks like after the last step: OBSERVATIONS
+	///		   floats per race (SPEED, POSITION...). The array is the same on
+	///		   every step; copy it to keep it
+	///=========================================================================
+	public float[] getObservations()
+	{
+		return m_Observations;
+	}
+
+	///=========================================================================
+	///@return the reward of every race for the last step: its speed as a
+	///		   share of top speed, which is what makes it cover the circuit
+	///		   (the grass and the curves cost speed). The array is the same
+	///		   on every step
+	///=========================================================================
+	public float[] getRewards()
+	{
+		return m_Rewards;
+	}
+
+	///=========================================================================
+	///@param int race	a race
+	///@return its speed (km/h)
+	///=========================================================================
+	public int getSpeed(int race)
+	{
+		return m_Speed[race];
+	}
+
+	///=========================================================================
+	///@param int race	a race
+	///@return its position on the circuit (km, 32.32 fixed point)
+	///=========================================================================
+	public long getDistance(int race)
+	{
+		return m_Distance[race];
+	}
+
+	///=========================================================================
+	///@param int race	a race
+	///@return its completed laps
+	///=========================================================================
+	public int getLaps(int race)
+	{
+		return m_Laps[race];
+	}
+
+	///=========================================================================
+	///@param int race	a race
+	///@return how far off the road center it is (base pixels)
+	///=========================================================================
+	public int getScroll(int race)
+	{
+		return m_Scroll[race];
+	}
+
+	///=========================================================================
+	///@param int race	a race
+	///@return where it steered in the last step (Player.STEER_LEFT...)
+	///=========================================================================
+	public int getSteer(int race)
+	{
+		return m_Steer[race];
+	}
+
+	///=========================================================================
+	///Steps every chunk, in parallel; reused from one step to the next
+	///=========================================================================
+	private class Step extends RecursiveAction
+	{
+		final private static long serialVersionUID = 1L;
+
+		@Override
+		protected void compute()
+		{
+			for (int i = 0; i < m_Chunks.length; ++i)
+			{
+				m_Chunks[i].reinitialize();
+			}
+			invokeAll(m_Chunks);
+		}
+	}
+
+	///=========================================================================
+	///The races [first, last)
+	///=========================================================================
+	private class Chunk extends RecursiveAction
+	{
+		final private static long serialVersionUID = 1L;
+
+		private int m_First;
+		private int m_Last;
+
+		Chunk(int first, int last)
+		{
+			m_First = first;
+			m_Last = last;
+		}
+
+		@Override
+		protected void compute()
+		{
+			step(m_First, m_Last);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+///=============================================================================
+///@file    Drawable.java
+///@brief   Something on screen, drawn through a RenderQueue.
+///=============================================================================
+
+import java.awt.*;
+
+///=============================================================================
+///Every frame a drawable works out what it has to draw, and where, and
+///submits it to the queue as one or more commands; each command carries an
+///item number only the drawable knows the meaning of (a tile, a car, a half
+///of the HUD...). Once the queue is sorted it calls the drawable back to draw
+///each item that survived culling, in order.
+///=============================================================================
+interface Drawable
+{
+	///=========================================================================
+	///Submits what to draw in between the previous and the current tick
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	void submit(RenderQueue queue, GameState prev, GameState cur, float alpha);
+
+	///=========================================================================
+	///Draws one of the items submitted
+	///@param Graphics g	an awt.Graphics object to draw into
+	///@param int item		the item
+	///=========================================================================
+	void draw(Graphics g, int item);
+
+	///=========================================================================
+	///Draws the rows [top, bottom) of one of the items submitted straight
+	///into int RGB pixels
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int item		the item
+	///=========================================================================
+	void draw(int[] pixels, int width, int top, int bottom, int item);
+}
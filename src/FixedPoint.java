@@ -2,6 +2,8 @@
 ///@file    FixedPoint.java
 ///@brief   Fixed Point class to represent float values in 16.16
 ///			16 bits represent the integral part and 16 bits the decimal
+///			The static methods work on plain ints (16.16) and longs (32.32)
+///			and never allocate; the instance methods are built on them
 ///
 ///@author  Hctor Morales Piloni
 ///@date    December 30, 2007
@@ -9,8 +11,15 @@
 
 class FixedPoint 
 {
-	final private int FP_SHIFT = 16;
-	final private int FP_SCALE = 0xFFFF;
+	final public static int FP_SHIFT = 16;				//bits of the decimal part
+	final public static int FP_ONE = 1 << FP_SHIFT;		//1.0 in 16.16
+	final public static int FP_HALF = FP_ONE >> 1;		//0.5 in 16.16
+	final public static int FP_MAX = Integer.MAX_VALUE;	//largest 16.16 (~32768.0)
+	final public static int FP_MIN = Integer.MIN_VALUE;	//smallest 16.16 (-32768.0)
+	final public static int FP_LONG_SHIFT = 32;			//bits of the decimal part in 32.32
+	final public static long FP_LONG_ONE = 1L << FP_LONG_SHIFT;	//1.0 in 32.32
+	final private static long LOW_MASK = FP_LONG_ONE - 1;		//the low 32 bits of a long
+
 	private int m_value;
 
 	public FixedPoint() 
@@ -20,12 +29,12 @@ class FixedPoint
 
 	public FixedPoint(int value) 
 	{
-		m_value = value << FP_SHIFT;
+		m_value = FromInt(value);
 	}
 
 	public FixedPoint(double value) 
 	{
-		m_value = (int) (value * FP_SCALE);
+		m_value = FromDouble(value);
 	}
 
 	///=========================================================================
@@ -63,20 +72,17 @@ class FixedPoint
 	///=========================================================================
 	public int Mul(FixedPoint fp) 
 	{
-		//shift to avoid double scaling
-		return ((m_value * fp.GetValue()) >> FP_SHIFT);
+		return Mul(m_value, fp.GetValue());
 	}
 
 	public int Mul(int i) 
 	{
-		FixedPoint fp = new FixedPoint(i);
-		return Mul(fp);
+		return MulInt(m_value, i);
 	}
 
 	public int Mul(double d) 
 	{
-		FixedPoint fp = new FixedPoint(d);
-		return Mul(fp);
+		return Mul(m_value, FromDouble(d));
 	}
 
 	///=========================================================================
@@ -85,19 +91,361 @@ class FixedPoint
 	///=========================================================================
 	public int Div(FixedPoint fp) 
 	{
-		//pre-scale to maintain the fixed point property
-		return (m_value << FP_SHIFT) / fp.GetValue();
+		return Div(m_value, fp.GetValue());
 	}
 
 	public int Div(int i) 
 	{
-		FixedPoint fp = new FixedPoint(i);
-		return Div(fp);
+		return DivInt(m_value, i);
 	}
 
 	public int Div(double d) 
 	{
-		FixedPoint fp = new FixedPoint(d);
-		return Div(fp);
+		return Div(m_value, FromDouble(d));
+	}
+
+	///=========================================================================
+	///Clamps a wide result to the 16.16 range
+	///@param long value	a 16.16 value that may not fit in an int
+	///@returns int the value, or FP_MIN/FP_MAX if it does not fit
+	///=========================================================================
+	public static int Saturate(long value) 
+	{
+		if (value > FP_MAX) 
+		{
+			return FP_MAX;
+		}
+
+		if (value < FP_MIN) 
+		{
+			return FP_MIN;
+		}
+
+		return (int) value;
+	}
+
+	///=========================================================================
+	///FromInt
+	///@param int i	an integer
+	///@returns int i in 16.16 (saturated)
+	///=========================================================================
+	public static int FromInt(int i) 
+	{
+		return Saturate((long) i << FP_SHIFT);
+	}
+
+	///=========================================================================
+	///FromDouble
+	///@param double d	a real number
+	///@returns int d in 16.16, rounded to the nearest 1/65536 (saturated)
+	///=========================================================================
+	public static int FromDouble(double d) 
+	{
+		return Saturate(Math.round(d * FP_ONE));
+	}
+
+	///=========================================================================
+	///FromRatio
+	///@param int num	numerator
+	///@param int den	denominator (not 0)
+	///@returns int num/den in 16.16, truncated toward zero (saturated)
+	///=========================================================================
+	public static int FromRatio(int num, int den) 
+	{
+		return Saturate(((long) num << FP_SHIFT) / den);
+	}
+
+	///=========================================================================
+	///ToInt
+	///@param int fp	a 16.16 number
+	///@returns int the largest integer not greater than fp (floor)
+	///=========================================================================
+	public static int ToInt(int fp) 
+	{
+		return fp >> FP_SHIFT;
+	}
+
+	///=========================================================================
+	///Round
+	///@param int fp	a 16.16 number
+	///@returns int fp rounded to the nearest integer (halves round up)
+	///=========================================================================
+	public static int Round(int fp) 
+	{
+		return (int) (((long) fp + FP_HALF) >> FP_SHIFT);
+	}
+
+	///=========================================================================
+	///ToDouble
+	///@param int fp	a 16.16 number
+	///@returns double fp as a real number
+	///=========================================================================
+	public static double ToDouble(int fp) 
+	{
+		return fp / (double) FP_ONE;
+	}
+
+	///=========================================================================
+	///Saturated addition
+	///@param int a, b	16.16 operands
+	///@returns int a + b in 16.16
+	///=========================================================================
+	public static int Add(int a, int b) 
+	{
+		return Saturate((long) a + b);
+	}
+
+	///=========================================================================
+	///Saturated subtraction
+	///@param int a, b	16.16 operands
+	///@returns int a - b in 16.16
+	///=========================================================================
+	public static int Sub(int a, int b) 
+	{
+		return Saturate((long) a - b);
+	}
+
+	///=========================================================================
+	///Fixed point multiplication; the 32.32 product is kept in a long so
+	///nothing overflows before it is scaled back
+	///@param int a, b	16.16 operands
+	///@returns int a * b in 16.16 (saturated)
+	///=========================================================================
+	public static int Mul(int a, int b) 
+	{
+		return Saturate(((long) a * b) >> FP_SHIFT);
+	}
+
+	///=========================================================================
+	///Multiplies a fixed point number by an integer
+	///@param int fp	16.16 operand
+	///@param int i		integer operand
+	///@returns int fp * i in 16.16 (saturated)
+	///=========================================================================
+	public static int MulInt(int fp, int i) 
+	{
+		return Saturate((long) fp * i);
+	}
+
+	///=========================================================================
+	///Fixed point division; the dividend is pre-scaled in a long so it keeps
+	///all of its bits
+	///@param int a	16.16 dividend
+	///@param int b	16.16 divisor (not 0)
+	///@returns int a / b in 16.16, truncated toward zero (saturated)
+	///=========================================================================
+	public static int Div(int a, int b) 
+	{
+		return Saturate(((long) a << FP_SHIFT) / b);
+	}
+
+	///=========================================================================
+	///Divides a fixed point number by an integer
+	///@param int fp	16.16 dividend
+	///@param int i		integer divisor (not 0)
+	///@returns int fp / i in 16.16, truncated toward zero (saturated)
+	///=========================================================================
+	public static int DivInt(int fp, int i) 
+	{
+		return Saturate((long) fp / i);
+	}
+
+	///=========================================================================
+	///Linear interpolation
+	///@param int a, b	16.16 end points
+	///@param int t		16.16 weight, 0 gives a and FP_ONE gives b
+	///@returns int a + (b - a) * t in 16.16 (saturated)
+	///=========================================================================
+	public static int Lerp(int a, int b, int t) 
+	{
+		return Saturate(a + ((((long) b - a) * t) >> FP_SHIFT));
+	}
+
+	///=========================================================================
+	///Builds a lookup table of 16.16 numbers
+	///@param double[] values	the real numbers
+	///@returns int[] the numbers in 16.16 (see FromDouble)
+	///=========================================================================
+	public static int[] Table(double[] values) 
+	{
+		int[] table = new int[values.length];
+
+		for (int i = 0; i < values.length; ++i) 
+		{
+			table[i] = FromDouble(values[i]);
+		}
+
+		return table;
+	}
+
+	///=========================================================================
+	///Reads a lookup table at a fractional index, interpolating linearly
+	///between its two closest entries; indices are clamped to the table
+	///@param int[] table	16.16 entries (at least one)
+	///@param int index		16.16 index
+	///@returns int the interpolated entry in 16.16
+	///=========================================================================
+	public static int Lookup(int[] table, int index) 
+	{
+		int last = table.length - 1;
+		int i = ToInt(index);
+
+		if (i < 0) 
+		{
+			return table[0];
+		}
+
+		if (i >= last) 
+		{
+			return table[last];
+		}
+
+		return Lerp(table[i], table[i + 1], index & (FP_ONE - 1));
+	}
+
+	///=========================================================================
+	///Widens a 16.16 number to 32.32
+	///@param int fp	a 16.16 number
+	///@returns long fp in 32.32
+	///=========================================================================
+	public static long ToLong(int fp) 
+	{
+		return (long) fp << (FP_LONG_SHIFT - FP_SHIFT);
+	}
+
+	///=========================================================================
+	///Narrows a 32.32 number to 16.16
+	///@param long fp	a 32.32 number
+	///@returns int fp in 16.16, floored (saturated)
+	///=========================================================================
+	public static int FromLong(long fp) 
+	{
+		return Saturate(fp >> (FP_LONG_SHIFT - FP_SHIFT));
+	}
+
+	///=========================================================================
+	///LongFromInt
+	///@param int i	an integer
+	///@returns long i in 32.32
+	///=========================================================================
+	public static long LongFromInt(int i) 
+	{
+		return (long) i << FP_LONG_SHIFT;
+	}
+
+	///=========================================================================
+	///LongToInt
+	///@param long fp	a 32.32 number
+	///@returns int the integral part of fp (floor)
+	///=========================================================================
+	public static int LongToInt(long fp) 
+	{
+		return (int) (fp >> FP_LONG_SHIFT);
+	}
+
+	///=========================================================================
+	///32.32 multiplication; the 64.64 product doesn't fit in a long, so it is
+	///put together from the 32 bit halves of the magnitudes of the operands
+	///(the high and the low long of a 128 bit product)
+	///@param long a, b	32.32 operands
+	///@returns long a * b in 32.32, floored (saturated)
+	///=========================================================================
+	public static long MulLong(long a, long b) 
+	{
+		boolean negative = (a < 0) != (b < 0);
+
+		//the magnitudes, unsigned (that of Long.MIN_VALUE is 2^63)
+		long x = (a < 0) ? -a : a;
+		long y = (b < 0) ? -b : b;
+
+		long x1 = x >>> FP_LONG_SHIFT;
+		long x0 = x & LOW_MASK;
+		long y1 = y >>> FP_LONG_SHIFT;
+		long y0 = y & LOW_MASK;
+
+		long p00 = x0 * y0;
+		long p01 = x0 * y1;
+		long p10 = x1 * y0;
+		long middle = (p00 >>> FP_LONG_SHIFT) + (p01 & LOW_MASK) + (p10 & LOW_MASK);
+		long high = x1 * y1 + (p01 >>> FP_LONG_SHIFT) + (p10 >>> FP_LONG_SHIFT) + (middle >>> FP_LONG_SHIFT);
+		long fraction = p00 & LOW_MASK;		//bits of the product below the result
+
+		//the 32.32 result is the middle 64 bits of the 64.64 product
+		if ((high >>> (FP_LONG_SHIFT - 1)) != 0) 
+		{
+			return negative ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+
+		long result = (high << FP_LONG_SHIFT) | (middle & LOW_MASK);
+		if (negative) 
+		{
+			return -result - ((fraction != 0) ? 1 : 0);
+		}
+
+		return result;
+	}
+
+	///=========================================================================
+	///32.32 division; the dividend would need 96 bits to be pre-scaled like
+	///Div does, so the integral part of the quotient is divided first and the
+	///fraction is worked out from the remainder
+	///@param long a	32.32 dividend
+	///@param long b	32.32 divisor (not 0)
+	///@returns long a / b in 32.32, truncated toward zero (saturated)
+	///=========================================================================
+	public static long DivLong(long a, long b) 
+	{
+		boolean negative = (a < 0) != (b < 0);
+
+		//the magnitudes, unsigned (that of Long.MIN_VALUE is 2^63)
+		long x = (a < 0) ? -a : a;
+		long y = (b < 0) ? -b : b;
+
+		long result;
+		if (y == Long.MIN_VALUE) 
+		{
+			//a / -2^31 (b is -2^31 in 32.32)
+			result = x >>> (FP_LONG_SHIFT - 1);
+		} 
+		else 
+		{
+			//unsigned x / y (0 < y < 2^63)
+			long integral = ((x >>> 1) / y) << 1;
+			long remainder = x - integral * y;
+			if (remainder < 0 || remainder >= y) 
+			{
+				integral++;
+				remainder -= y;
+			}
+
+			if ((integral >>> (FP_LONG_SHIFT - 1)) != 0) 
+			{
+				return negative ? Long.MIN_VALUE : Long.MAX_VALUE;
+			}
+
+			long fraction = 0;
+			if (y <= Integer.MAX_VALUE) 
+			{
+				fraction = (remainder << FP_LONG_SHIFT) / y;
+			} 
+			else 
+			{
+				//one bit at a time; the shifted remainder may need 64 bits
+				for (int i = 0; i < FP_LONG_SHIFT; ++i) 
+				{
+					remainder <<= 1;
+					fraction <<= 1;
+					if (remainder < 0 || remainder >= y) 
+					{
+						remainder -= y;
+						fraction |= 1;
+					}
+				}
+			}
+
+			result = (integral << FP_LONG_SHIFT) | fraction;
+		}
+
+		return negative ? -result : result;
 	}
 }
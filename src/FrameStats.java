@@ -0,0 +1,185 @@
+///=============================================================================
+///@file    FrameStats.java
+///@brief   How long each stage of a tick and of a frame takes.
+///=============================================================================
+
+import java.io.*;
+import java.util.Locale;
+
+///=============================================================================
+///One Histogram per stage, all allocated up front, so measuring a frame
+///allocates nothing. The stages of a tick are recorded once per tick; the
+///drawables are drawn a piece at a time (see RenderQueue), so their times are
+///added up over the frame and recorded when the frame ends.
+///
+///Like Simulation this class has no AWT dependency; StatsOverlay shows the
+///numbers on screen. Each stage is written by a single thread, the one that
+///also writes its CSV rows and resets it (see writeCsv).
+///=============================================================================
+class FrameStats
+{
+	//the stages of a tick
+	final public static int TICK = 0;				//the whole tick, input included
+	final public static int UPDATE_LANDSCAPE = 1;
+	final public static int UPDATE_ROAD = 2;
+	final public static int UPDATE_PLAYER = 3;
+	final public static int UPDATE_TRAFFIC = 4;
+
+	//the stages of a frame
+	final public static int FRAME = 5;				//the whole frame, present included
+	final public static int SUBMIT = 6;				//submitting to and sorting the queue
+	final public static int PRESENT = 7;			//showing the frame
+	final public static int INPUT_LATENCY = 8;		//key event to the frame showing it
+	final public static int DRAW = 9;				//the first drawable (see constructor)
+
+	final private static String[] NAMES = {
+		"tick", "update landscape", "update road", "update player", "update traffic",
+		"frame", "submit", "present", "input"
+	};
+
+	final private static double[] PERCENTILES = { 50, 99, 99.9 };
+
+	private String[] m_Names;			//of every stage
+	private Histogram[] m_Histograms;
+	private long[] m_Frame;				//time of the draw stages so far this frame
+
+	///=========================================================================
+	///Constructor
+	///@param String[] drawNames	the drawables timed on their own; they are
+	///								the stages DRAW, DRAW + 1...
+	///=========================================================================
+	public FrameStats(String[] drawNames)
+	{
+		m_Names = new String[DRAW + drawNames.length];
+		System.arraycopy(NAMES, 0, m_Names, 0, DRAW);
+		for (int i = 0; i < drawNames.length; ++i)
+		{
+			m_Names[DRAW + i] = "draw " + drawNames[i];
+		}
+
+		m_Histograms = new Histogram[m_Names.length];
+		for (int i = 0; i < m_Histograms.length; ++i)
+		{
+			m_Histograms[i] = new Histogram();
+		}
+
+		m_Frame = new long[drawNames.length];
+	}
+
+	///=========================================================================
+	///@return the number of stages
+	///=========================================================================
+	public int getStages()
+	{
+		return m_Names.length;
+	}
+
+	///=========================================================================
+	///@param int stage		a stage
+	///@return its name
+	///=========================================================================
+	public String getName(int stage)
+	{
+		return m_Names[stage];
+	}
+
+	///=========================================================================
+	///@param int stage		a stage
+	///@return its times
+	///=========================================================================
+	public Histogram getHistogram(int stage)
+	{
+		return m_Histograms[stage];
+	}
+
+	///=========================================================================
+	///Records one run of a stage
+	///@param int stage		the stage
+	///@param long time		how long it took (ns)
+	///=========================================================================
+	public void record(int stage, long time)
+	{
+		m_Histograms[stage].record(time);
+	}
+
+	///=========================================================================
+	///Adds up a piece of a draw stage (see endFrame)
+	///@param int stage		the stage, DRAW or after
+	///@param long time		how long the piece took (ns)
+	///=========================================================================
+	public void add(int stage, long time)
+	{
+		m_Frame[stage - DRAW] += time;
+	}
+
+	///=========================================================================
+	///Records the draw stages added up over the frame (0 for a drawable with
+	///nothing on screen) and starts over
+	///=========================================================================
+	public void endFrame()
+	{
+		for (int i = 0; i < m_Frame.length; ++i)
+		{
+			m_Histograms[DRAW + i].record(m_Frame[i]);
+			m_Frame[i] = 0;
+		}
+	}
+
+	///=========================================================================
+	///Forgets the times recorded for some stages
+	///@param int first		the first stage
+	///@param int end		the stage after the last
+	///=========================================================================
+	public void reset(int first, int end)
+	{
+		for (int i = first; i < end; ++i)
+		{
+			m_Histograms[i].reset();
+		}
+	}
+
+	///=========================================================================
+	///Writes the CSV header (see writeCsv)
+	///@param PrintWriter out	where to write it
+	///=========================================================================
+	public static void writeCsvHeader(PrintWriter out)
+	{
+		out.println("time_s,stage,count,p50_us,p99_us,p99.9_us,max_us");
+	}
+
+	///=========================================================================
+	///Writes a CSV row per stage: its count and percentiles in microseconds.
+	///Only the thread recording the stages may write them: the ticks' and the
+	///frames' are written apart, each row a single println so the rows of two
+	///threads don't mix.
+	///@param PrintWriter out	where to write them
+	///@param double time		seconds since the game started, first column
+	///@param int first			the first stage
+	///@param int end			the stage after the last
+	///=========================================================================
+	public void writeCsv(PrintWriter out, double time, int first, int end)
+	{
+		for (int i = first; i < end; ++i)
+		{
+			Histogram h = m_Histograms[i];
+			StringBuilder row = new StringBuilder();
+			row.append(String.format(Locale.ROOT, "%.1f", time)).append(',').append(m_Names[i]).append(',').append(h.getCount());
+			for (int p = 0; p < PERCENTILES.length; ++p)
+			{
+				row.append(',').append(toMicros(h.getPercentile(PERCENTILES[p])));
+			}
+			row.append(',').append(toMicros(h.getMax()));
+			out.println(row);
+		}
+		out.flush();
+	}
+
+	///=========================================================================
+	///@param long time		ns
+	///@return the time in microseconds, with one decimal
+	///=========================================================================
+	public static String toMicros(long time)
+	{
+		return String.format(Locale.ROOT, "%.1f", time / 1000.0);
+	}
+}
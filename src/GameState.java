@@ -0,0 +1,143 @@
+///=============================================================================
+///@file    GameState.java
+///@brief   Plain snapshot of everything the simulation changes per tick.
+///=============================================================================
+
+class GameState
+{
+	//player
+	int speed;				//km/h
+	int steer;				//Player.STEER_LEFT, STEER_RIGHT or STEER_NONE
+	int frame;				//player's sprite frame
+	boolean accelerating;	//pushing the gas pedal
+	boolean braking;		//pushing the brake pedal
+
+	//road
+	long distance;			//position on the track in km, 32.32 fixed point
+	int laps;				//completed laps
+	int scroll;				//how much the road has been scrolled (pixels)
+	int borderChange;		//y-coord of the first border-color change
+	boolean borderSwapped;	//border starts RED (division ROAD_COLOR) instead of WHITE
+
+	//landscape
+	int landscapeOffset;	//scroll of the front layer (pixels, 0 to Landscape.PERIOD - 1)
+
+	//opponents, kept sorted by track distance, then lane (see Traffic);
+	//index i of the arrays below is the i-th car from the start line
+	int opponents;			//number of opponent cars
+	long[] oppDistance;		//position on the track in km, 32.32 fixed point
+	int[] oppLane;			//pixels off the road center (bottom scanline)
+	int[] oppSpeed;			//km/h
+	int[] oppId;			//which car is at each place
+	int[] oppPlace;			//where each car is (by id)
+	int collisions;			//times the player hit an opponent
+
+	long ticks;				//ticks simulated so far
+
+	///=========================================================================
+	///Default constructor
+	///=========================================================================
+	public GameState()
+	{
+		this(0);
+	}
+
+	///=========================================================================
+	///Constructor
+	///@param int opponents	number of opponent cars
+	///=========================================================================
+	public GameState(int opponents)
+	{
+		setOpponents(opponents);
+	}
+
+	///=========================================================================
+	///Makes room for a number of opponent cars
+	///@param int opponents	number of opponent cars
+	///=========================================================================
+	private void setOpponents(int opponents)
+	{
+		this.opponents = opponents;
+		oppDistance = new long[opponents];
+		oppLane = new int[opponents];
+		oppSpeed = new int[opponents];
+		oppId = new int[opponents];
+		oppPlace = new int[opponents];
+	}
+
+	///=========================================================================
+	///Copies another state into this one (no allocation, unless it has a
+	///different number of opponents)
+	///@param GameState s	the state to copy
+	///=========================================================================
+	public void copyFrom(GameState s)
+	{
+		speed = s.speed;
+		steer = s.steer;
+		frame = s.frame;
+		accelerating = s.accelerating;
+		braking = s.braking;
+
+		distance = s.distance;
+		laps = s.laps;
+		scroll = s.scroll;
+		borderChange = s.borderChange;
+		borderSwapped = s.borderSwapped;
+
+		landscapeOffset = s.landscapeOffset;
+
+		if (opponents != s.opponents)
+		{
+			setOpponents(s.opponents);
+		}
+		System.arraycopy(s.oppDistance, 0, oppDistance, 0, opponents);
+		System.arraycopy(s.oppLane, 0, oppLane, 0, opponents);
+		System.arraycopy(s.oppSpeed, 0, oppSpeed, 0, opponents);
+		System.arraycopy(s.oppId, 0, oppId, 0, opponents);
+		System.arraycopy(s.oppPlace, 0, oppPlace, 0, opponents);
+		collisions = s.collisions;
+
+		ticks = s.ticks;
+	}
+
+	///=========================================================================
+	///A hash of the whole state: two races that end with the same checksum
+	///(almost certainly) went the same way (see InputRecorder)
+	///@return the checksum
+	///=========================================================================
+	public long checksum()
+	{
+		long h = 0xCBF29CE484222325L;
+		h = mix(h, speed);
+		h = mix(h, steer);
+		h = mix(h, frame);
+		h = mix(h, accelerating ? 1 : 0);
+		h = mix(h, braking ? 1 : 0);
+
+		h = mix(h, distance);
+		h = mix(h, laps);
+		h = mix(h, scroll);
+		h = mix(h, borderChange);
+		h = mix(h, borderSwapped ? 1 : 0);
+
+		h = mix(h, landscapeOffset);
+
+		h = mix(h, opponents);
+		for (int i = 0; i < opponents; ++i)
+		{
+			h = mix(h, oppDistance[i]);
+			h = mix(h, oppLane[i]);
+			h = mix(h, oppSpeed[i]);
+			h = mix(h, oppId[i]);
+		}
+		h = mix(h, collisions);
+
+		return mix(h, ticks);
+	}
+
+	//FNV-1a style, a long at a time
+	private static long mix(long h, long value)
+	{
+		return (h ^ value) * 0x100000001B3L;
+	}
+}
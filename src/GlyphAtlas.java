@@ -0,0 +1,129 @@
+///=============================================================================
+///@file    GlyphAtlas.java
+///@brief   The digits of a font, rendered once, for drawing numbers.
+///=============================================================================
+
+import java.awt.*;
+import java.awt.image.*;
+
+///=============================================================================
+///drawString lays the text out and rasterizes every glyph each time it's
+///called. Numbers on the HUD only ever need the ten digits, so we render them
+///once into a strip and draw numbers as plain blits from there.
+///=============================================================================
+class GlyphAtlas
+{
+	final private static String DIGITS = "0123456789";
+
+	private BufferedImage m_Strip;	//one cell per digit
+	private int m_Height;			//strip (and cell) height
+	private int m_Ascent;			//baseline from the top of a cell
+	private int[] m_Offset;			//x of each digit's cell in the strip
+	private int[] m_Advance;		//width of each digit's cell
+	private int m_MaxAdvance;		//width of the widest cell
+
+	///=========================================================================
+	///Constructor
+	///@param Font font		the font of the digits
+	///@param Color color	their color
+	///=========================================================================
+	public GlyphAtlas(Font font, Color color)
+	{
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D sg = scratch.createGraphics();
+		FontMetrics metrics = sg.getFontMetrics(font);
+		sg.dispose();
+
+		int width = 0;
+		m_Offset = new int[DIGITS.length()];
+		m_Advance = new int[DIGITS.length()];
+		m_MaxAdvance = 0;
+		for (int i = 0; i < DIGITS.length(); ++i)
+		{
+			m_Offset[i] = width;
+			m_Advance[i] = metrics.charWidth(DIGITS.charAt(i));
+			m_MaxAdvance = Math.max(m_MaxAdvance, m_Advance[i]);
+			width += m_Advance[i];
+		}
+
+		m_Ascent = metrics.getAscent();
+		m_Height = metrics.getAscent() + metrics.getDescent();
+
+		m_Strip = new BufferedImage(width, m_Height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = m_Strip.createGraphics();
+		g.setFont(font);
+		g.setColor(color);
+		for (int i = 0; i < DIGITS.length(); ++i)
+		{
+			g.drawString(DIGITS.substring(i, i + 1), m_Offset[i], m_Ascent);
+		}
+		g.dispose();
+	}
+
+	///=========================================================================
+	///@return the baseline of the digits from their top
+	///=========================================================================
+	public int getAscent()
+	{
+		return m_Ascent;
+	}
+
+	///=========================================================================
+	///@return the height of the digits (ascent + descent)
+	///=========================================================================
+	public int getHeight()
+	{
+		return m_Height;
+	}
+
+	///=========================================================================
+	///@param int value	a number (0 or more)
+	///@return the width the number takes when drawn
+	///=========================================================================
+	public int getWidth(int value)
+	{
+		int width = 0;
+
+		do
+		{
+			width += m_Advance[value % 10];
+			value /= 10;
+		}
+		while (value > 0);
+
+		return width;
+	}
+
+	///=========================================================================
+	///@param int digits	number of digits
+	///@return the most any number with that many digits can take
+	///=========================================================================
+	public int getMaxWidth(int digits)
+	{
+		return digits * m_MaxAdvance;
+	}
+
+	///=========================================================================
+	///Draws a number, right-aligned
+	///@param Graphics g	an awt.Graphics object to draw into
+	///@param int right		x where the number ends
+	///@param int baseline	y of the baseline
+	///@param int value		the number (0 or more)
+	///=========================================================================
+	public void draw(Graphics g, int right, int baseline, int value)
+	{
+		int top = baseline - m_Ascent;
+		int x = right;
+
+		//from the last digit to the first
+		do
+		{
+			int digit = value % 10;
+			int sx = m_Offset[digit];
+			x -= m_Advance[digit];
+			g.drawImage(m_Strip, x, top, x + m_Advance[digit], top + m_Height, sx, 0, sx + m_Advance[digit], m_Height, null);
+			value /= 10;
+		}
+		while (value > 0);
+	}
+}
@@ -7,44 +7,264 @@
 ///=============================================================================
 
 import java.awt.*;
+import java.awt.image.*;
 
-public class HUD 
+///=============================================================================
+///The HUD is composed into a transparent layer the size of the screen, which
+///is all we draw per frame: one blit of whatever there is in each half of the
+///screen (the HUD hugs the top and bottom edges; the middle of the layer is
+///empty and not worth blending). The layer is only touched when one of
+///the numbers on it changes, and then only the number's rectangle is composed
+///again: the static labels (rendered once), the digits (copied from a glyph
+///atlas) and the sprites on top.
+///
+///The layout is the one of the base resolution, scaled to the screen when the
+///HUD is built: fonts, margins and baselines alike.
+///=============================================================================
+public class HUD implements Drawable
 {
+	final public static int DEFAULT_TIME_LEFT = 50;	//what the HUD shows until told otherwise
+
+	//baselines, on screen
+	private int m_TimeBaseline;
+	private int m_BottomBaseline;
+
 	private Sprite m_CircuitMap;
 	private Sprite m_Speedometer;
+	private GlyphAtlas m_SmallDigits;	//Arial bold 20
+	private GlyphAtlas m_LargeDigits;	//Arial bold 50
+	private BufferedImage m_Labels;		//the text that never changes
+	private BufferedImage m_Layer;		//the whole HUD, composed
+	private int[] m_LayerPixels;		//its ARGB pixels (software rendering)
+	private int[] m_LayerFrom;			//the layer's columns on each row (see Raster.spans)
+	private int[] m_LayerTo;
+	private BufferedImage m_Image;		//screen-compatible copy of the layer
+	private Rectangle m_Top;			//what there is on the top half of the layer
+	private Rectangle m_Bottom;			//and on the bottom half
+
+	//where the numbers go
+	private int m_TimeRight;
+	private int m_NitroLeft;
+	private int m_SpeedRight;
+
+	//the numbers on the layer, and the ones to show next
+	private int m_TimeLeft, m_ShownTimeLeft;
+	private int m_Nitro, m_ShownNitro;
+	private int m_ShownSpeed;
 	
 	///=========================================================================
 	///Default constructor
 	///=========================================================================	
 	public HUD()
 	{
+		int w = PolePosition.APP_WIDTH;
+		int h = PolePosition.APP_HEIGHT;
+		int margin = PolePosition.scaleX(10);
+		m_TimeBaseline = PolePosition.scaleY(70);
+		m_BottomBaseline = h - PolePosition.scaleY(10);
+
 		m_CircuitMap = new Sprite(1);
 		m_CircuitMap.addFrame(1, "images/map.png");
-		m_CircuitMap.setX(10);
-		m_CircuitMap.setY(10);
+		m_CircuitMap.setX(margin);
+		m_CircuitMap.setY(PolePosition.scaleY(10));
 		
 		m_Speedometer = new Sprite(1);
 		m_Speedometer.addFrame(1, "images/speedometer.png");
-		m_Speedometer.setX(PolePosition.APP_WIDTH - 160);
-		m_Speedometer.setY(PolePosition.APP_HEIGHT - 50);
+		m_Speedometer.setX(w - PolePosition.scaleX(160));
+		m_Speedometer.setY(h - PolePosition.scaleY(50));
+
+		Font small = new Font("Arial", Font.BOLD, Math.max(PolePosition.scaleY(20), 1));
+		Font large = new Font("Arial", Font.BOLD, Math.max(PolePosition.scaleY(50), 1));
+		m_SmallDigits = new GlyphAtlas(small, Color.YELLOW);
+		m_LargeDigits = new GlyphAtlas(large, Color.YELLOW);
+
+		//the numbers end where they used to when the HUD showed "50" & "100"
+		m_TimeRight = w / 2 - PolePosition.scaleX(20) + m_LargeDigits.getWidth(DEFAULT_TIME_LEFT);
+		m_SpeedRight = w - PolePosition.scaleX(110) + m_SmallDigits.getWidth(100);
+
+		m_Labels = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = m_Labels.createGraphics();
+		g.setColor(Color.YELLOW);
+		g.setFont(small);
+		g.drawString("TIME LEFT", w / 2 - PolePosition.scaleX(40), PolePosition.scaleY(30));
+		g.drawString("Nitro x ", margin, m_BottomBaseline);
+		g.drawString(" Km/h", m_SpeedRight, m_BottomBaseline);
+		m_NitroLeft = margin + g.getFontMetrics().stringWidth("Nitro x ");
+		g.dispose();
+
+		m_Layer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		m_LayerPixels = ((DataBufferInt) m_Layer.getRaster().getDataBuffer()).getData();
+		m_LayerFrom = new int[h];
+		m_LayerTo = new int[h];
+		m_Image = ImageCache.createCompatible(w, h, Transparency.TRANSLUCENT);
+		m_Top = new Rectangle();
+		m_Bottom = new Rectangle();
+
+		m_TimeLeft = m_ShownTimeLeft = DEFAULT_TIME_LEFT;
+		m_Nitro = m_ShownNitro = 0;
+		m_ShownSpeed = 0;
+		compose(0, 0, w, h);
 	}
-	
+
 	///=========================================================================
-	///Draws the HUD
-	///@param Graphics g an awt.graphics object to draw into
+	///@param int seconds	the time left to show (0 to 99)
 	///=========================================================================
-	public void draw(Graphics g)
+	public void setTimeLeft(int seconds)
 	{
-		g.setColor(Color.YELLOW);
-		g.setFont(new Font("Arial", Font.BOLD, 20));
-		g.drawString("TIME LEFT", PolePosition.APP_WIDTH/2-40, 30);
-		g.setFont(new Font("Arial", Font.BOLD, 50));
-		g.drawString("50", PolePosition.APP_WIDTH/2-20, 70);
-		g.setColor(Color.YELLOW);
-		g.setFont(new Font("Arial", Font.BOLD, 20));
-		g.drawString("Nitro x 0", 10, PolePosition.APP_HEIGHT-10);
-		g.drawString("100 Km/h", PolePosition.APP_WIDTH-110, PolePosition.APP_HEIGHT-10);
+		m_TimeLeft = Math.max(0, Math.min(seconds, 99));
+	}
+
+	///=========================================================================
+	///@param int nitro		the nitro count to show (0 to 99)
+	///=========================================================================
+	public void setNitro(int nitro)
+	{
+		m_Nitro = Math.max(0, Math.min(nitro, 99));
+	}
+
+	///=========================================================================
+	///Brings the numbers on the HUD up to date; call it once per frame,
+	///before drawing
+	///@param GameState cur		the state to show
+	///=========================================================================
+	public void update(GameState cur)
+	{
+		int speed = Math.max(0, Math.min(cur.speed, 999));
+
+		if (m_TimeLeft != m_ShownTimeLeft)
+		{
+			m_ShownTimeLeft = m_TimeLeft;
+			composeNumber(m_LargeDigits, m_TimeRight - m_LargeDigits.getMaxWidth(2), m_TimeBaseline, m_LargeDigits.getMaxWidth(2));
+		}
+
+		if (m_Nitro != m_ShownNitro)
+		{
+			m_ShownNitro = m_Nitro;
+			composeNumber(m_SmallDigits, m_NitroLeft, m_BottomBaseline, m_SmallDigits.getMaxWidth(2));
+		}
+
+		if (speed != m_ShownSpeed)
+		{
+			m_ShownSpeed = speed;
+			composeNumber(m_SmallDigits, m_SpeedRight - m_SmallDigits.getMaxWidth(3), m_BottomBaseline, m_SmallDigits.getMaxWidth(3));
+		}
+	}
+
+	///=========================================================================
+	///Brings the HUD up to date and submits both of its halves, on top of
+	///everything else
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick (the one shown)
+	///@param float alpha		unused: the HUD shows the last tick
+	///=========================================================================
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha)
+	{
+		update(cur);
+
+		//each half looks like the numbers on it
+		int key = RenderQueue.key(RenderQueue.LAYER_HUD, 0);
+		queue.submit(this, 0, key, m_Top.x, m_Top.y, m_Top.width, m_Top.height, m_ShownTimeLeft, false);
+		queue.submit(this, 1, key, m_Bottom.x, m_Bottom.y, m_Bottom.width, m_Bottom.height, m_ShownNitro * 1000 + m_ShownSpeed, false);
+	}
+
+	///=========================================================================
+	///Draws half of the HUD
+	///@param Graphics g	an awt.graphics object to draw into
+	///@param int item		0 for the top half, 1 for the bottom one
+	///=========================================================================
+	public void draw(Graphics g, int item)
+	{
+		Rectangle r = (item == 0) ? m_Top : m_Bottom;
+		g.drawImage(m_Image, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+	}
+
+	///=========================================================================
+	///Draws the rows [top, bottom) of half of the HUD straight into int RGB
+	///pixels
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int item		0 for the top half, 1 for the bottom one
+	///=========================================================================
+	public void draw(int[] pixels, int width, int top, int bottom, int item)
+	{
+		Rectangle r = (item == 0) ? m_Top : m_Bottom;
+		top = Math.max(top, r.y);
+		bottom = Math.min(bottom, r.y + r.height);
+		Raster.blitSpans(pixels, width, top, bottom, m_LayerPixels, PolePosition.APP_WIDTH, PolePosition.APP_HEIGHT, 0, 0, m_LayerFrom, m_LayerTo);
+	}
+
+	///=========================================================================
+	///Composes the rectangle a number is in again
+	///@param GlyphAtlas digits	the number's font
+	///@param int x				left of the rectangle
+	///@param int baseline		the number's baseline
+	///@param int w				width of the rectangle
+	///=========================================================================
+	private void composeNumber(GlyphAtlas digits, int x, int baseline, int w)
+	{
+		compose(x, baseline - digits.getAscent(), w, digits.getHeight());
+	}
+
+	///=========================================================================
+	///Composes a rectangle of the layer again and updates what depends on it
+	///@param int x, y, w, h	the rectangle
+	///=========================================================================
+	private void compose(int x, int y, int w, int h)
+	{
+		//clip to the layer
+		int x0 = Math.max(x, 0);
+		int y0 = Math.max(y, 0);
+		int x1 = Math.min(x + w, PolePosition.APP_WIDTH);
+		int y1 = Math.min(y + h, PolePosition.APP_HEIGHT);
+		if (x0 >= x1 || y0 >= y1)
+		{
+			return;
+		}
+
+		Graphics2D g = m_Layer.createGraphics();
+		g.clipRect(x0, y0, x1 - x0, y1 - y0);
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(x0, y0, x1 - x0, y1 - y0);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.drawImage(m_Labels, 0, 0, null);
+		m_LargeDigits.draw(g, m_TimeRight, m_TimeBaseline, m_ShownTimeLeft);
+		m_SmallDigits.draw(g, m_NitroLeft + m_SmallDigits.getWidth(m_ShownNitro), m_BottomBaseline, m_ShownNitro);
+		m_SmallDigits.draw(g, m_SpeedRight, m_BottomBaseline, m_ShownSpeed);
 		m_CircuitMap.draw(g);
 		m_Speedometer.draw(g);
+		g.dispose();
+
+		Raster.spans(m_LayerPixels, PolePosition.APP_WIDTH, y0, y1, m_LayerFrom, m_LayerTo);
+		m_Image.setRGB(x0, y0, x1 - x0, y1 - y0, m_LayerPixels, y0 * PolePosition.APP_WIDTH + x0, PolePosition.APP_WIDTH);
+		bound(m_Top, 0, PolePosition.APP_HEIGHT / 2);
+		bound(m_Bottom, PolePosition.APP_HEIGHT / 2, PolePosition.APP_HEIGHT);
+	}
+
+	///=========================================================================
+	///Finds the bounding box of what there is on some rows of the layer
+	///@param Rectangle r	receives the box (empty if there is nothing)
+	///@param int top		first row to look at
+	///@param int bottom	first row not to look at
+	///=========================================================================
+	private void bound(Rectangle r, int top, int bottom)
+	{
+		int x0 = PolePosition.APP_WIDTH, x1 = 0;
+		int y0 = bottom, y1 = top;
+
+		for (int row = top; row < bottom; ++row)
+		{
+			if (m_LayerFrom[row] < m_LayerTo[row])
+			{
+				x0 = Math.min(x0, m_LayerFrom[row]);
+				x1 = Math.max(x1, m_LayerTo[row]);
+				y0 = Math.min(y0, row);
+				y1 = row + 1;
+			}
+		}
+
+		r.setBounds(x0, y0, Math.max(x1 - x0, 0), Math.max(y1 - y0, 0));
 	}
 }
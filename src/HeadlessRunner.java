@@ -0,0 +1,175 @@
+///=============================================================================
+///@file    HeadlessRunner.java
+///@brief   Steps the simulation as fast as possible, without a display.
+///=============================================================================
+
+import java.io.*;
+
+///=============================================================================
+///Usage: java -Djava.awt.headless=true -cp <classes> HeadlessRunner
+///		[-ticks <n>] [-seed <n>] [-track <file>] [-opponents <n>]
+///		[-record <log>]
+///       java -Djava.awt.headless=true -cp <classes> HeadlessRunner
+///		-replay <log>
+///A simple autopilot keeps the gas pedal down and steers back towards the
+///center of the road, so every rule (curves, grass, laps, opponents) gets
+///exercised; -record writes its input to a log (see
+///InputRecorder). -replay steps a recorded race instead, as fast as possible,
+///and tells whether it ended the way it did when it was recorded.
+///=============================================================================
+public class HeadlessRunner
+{
+	final private static long DEFAULT_TICKS = 1000000L;
+	final private static int MAX_DRIFT = 60;	//pixels off center before steering back
+
+	public static void main(String args[])
+	{
+		long ticks = DEFAULT_TICKS;
+		long seed = 0;
+		String trackFile = null;
+		int opponents = Settings.DEFAULT_OPPONENTS;
+		String recordFile = null;
+		String replayFile = null;
+
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("-ticks") && i + 1 < args.length)
+			{
+				ticks = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("-seed") && i + 1 < args.length)
+			{
+				seed = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("-track") && i + 1 < args.length)
+			{
+				trackFile = args[++i];
+			}
+			else if (args[i].equals("-opponents") && i + 1 < args.length)
+			{
+				opponents = Math.max(Integer.parseInt(args[++i]), 0);
+			}
+			else if (args[i].equals("-record") && i + 1 < args.length)
+			{
+				recordFile = args[++i];
+			}
+			else if (args[i].equals("-replay") && i + 1 < args.length)
+			{
+				replayFile = args[++i];
+			}
+		}
+
+		try
+		{
+			if (replayFile != null)
+			{
+				replay(new InputPlayer(new File(replayFile)));
+			}
+			else
+			{
+				run(ticks, seed, trackFile, opponents, recordFile);
+			}
+		}
+		catch (IOException ex)
+		{
+			System.err.println(ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+	///=========================================================================
+	///Drives the autopilot
+	///@param long ticks			how many ticks
+	///@param long seed				the simulation's seed
+	///@param String trackFile		track file, null for the built-in circuit
+	///@param int opponents			opponent cars
+	///@param String recordFile		log to record the input to, or null
+	///=========================================================================
+	private static void run(long ticks, long seed, String trackFile, int opponents, String recordFile) throws IOException
+	{
+		Simulation sim = new Simulation(Track.open(trackFile), seed, opponents);
+		GameState state = sim.getState();
+		InputRecorder recorder = null;
+		if (recordFile != null)
+		{
+			recorder = new InputRecorder(new File(recordFile), seed, opponents, Settings.DEFAULT_TICK_RATE, trackFile);
+		}
+
+		long start = System.nanoTime();
+		for (long t = 0; t < ticks; ++t)
+		{
+			drive(sim, state);
+			if (recorder != null)
+			{
+				recorder.record(state);
+			}
+			sim.step();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (recorder != null)
+		{
+			recorder.close(state);
+		}
+
+		double seconds = elapsed / 1e9;
+		System.out.println("ticks:    " + ticks);
+		System.out.println("seed:     " + seed);
+		System.out.println("time:     " + seconds + " s");
+		System.out.println("ticks/s:  " + (long) (ticks / seconds));
+		System.out.println("laps:     " + state.laps);
+		System.out.println("distance: " + FixedPoint.LongToInt(state.distance) + " km");
+		System.out.println("speed:    " + state.speed);
+		System.out.println("scroll:   " + state.scroll);
+		System.out.println("opponents: " + opponents);
+		System.out.println("collisions: " + state.collisions);
+	}
+
+	///=========================================================================
+	///Steps a recorded race as fast as possible
+	///@param InputPlayer player	the race
+	///=========================================================================
+	private static void replay(InputPlayer player) throws IOException
+	{
+		Simulation sim = player.createSimulation(Track.open(player.getTrackFile()));
+		GameState state = sim.getState();
+
+		long start = System.nanoTime();
+		while (player.next(sim))
+		{
+			sim.step();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		double seconds = elapsed / 1e9;
+		System.out.println(player.verify(state));
+		System.out.println("time:     " + seconds + " s");
+		System.out.println("ticks/s:  " + (long) (state.ticks / seconds));
+		System.out.println("laps:     " + state.laps);
+		System.out.println("distance: " + FixedPoint.LongToInt(state.distance) + " km");
+		System.out.println("collisions: " + state.collisions);
+	}
+
+	///=========================================================================
+	///Autopilot: full throttle and steer back when drifting off center
+	///@param Simulation sim	the simulation to drive
+	///@param GameState state	its current state
+	///=========================================================================
+	private static void drive(Simulation sim, GameState state)
+	{
+		sim.accelerate(true);
+
+		if (state.scroll > MAX_DRIFT)
+		{
+			sim.setSteerDirection(Player.STEER_RIGHT);
+		}
+		else if (state.scroll < -MAX_DRIFT)
+		{
+			sim.setSteerDirection(Player.STEER_LEFT);
+		}
+		else
+		{
+			sim.setSteerDirection(Player.STEER_NONE);
+		}
+	}
+}
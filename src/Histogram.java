@@ -0,0 +1,135 @@
+///=============================================================================
+///@file    Histogram.java
+///@brief   A latency histogram: counts durations to read percentiles from.
+///=============================================================================
+
+import java.util.Arrays;
+
+///=============================================================================
+///Keeping every sample to sort them would allocate and grow without end, so
+///samples are only counted, in buckets whose width grows with the value:
+///values below 2 * SUB_BUCKETS get a bucket each, and every power of 2 above
+///is split into SUB_BUCKETS buckets. Any value is then known to within 1 /
+///SUB_BUCKETS (about 6%) from a fixed array of counts; recording is a few
+///shifts and an increment, and never allocates.
+///=============================================================================
+class Histogram
+{
+	final private static int SUB_BITS = 4;
+	final private static int SUB_BUCKETS = 1 << SUB_BITS;		//buckets per power of 2
+	final private static int LINEAR = 2 * SUB_BUCKETS;			//values with a bucket each
+	final private static int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_BUCKETS;
+
+	private long[] m_Counts;
+	private long m_Total;		//samples
+	private long m_Max;			//largest sample, exactly
+
+	///=========================================================================
+	///Default constructor
+	///=========================================================================
+	public Histogram()
+	{
+		m_Counts = new long[BUCKETS];
+		reset();
+	}
+
+	///=========================================================================
+	///Forgets every sample
+	///=========================================================================
+	public void reset()
+	{
+		Arrays.fill(m_Counts, 0);
+		m_Total = 0;
+		m_Max = 0;
+	}
+
+	///=========================================================================
+	///The bucket of a value
+	///=========================================================================
+	private static int getBucket(long value)
+	{
+		if (value < LINEAR)
+		{
+			return (int) value;
+		}
+
+		//the highest bit tells the power of 2, the next SUB_BITS the bucket
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	///=========================================================================
+	///The largest value of a bucket
+	///=========================================================================
+	private static long getBucketMax(int bucket)
+	{
+		if (bucket < LINEAR)
+		{
+			return bucket;
+		}
+
+		int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+		long mantissa = SUB_BUCKETS + (bucket - LINEAR) % SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	///=========================================================================
+	///Counts a sample
+	///@param long value	the sample (e.g. ns), negative ones count as 0
+	///=========================================================================
+	public void record(long value)
+	{
+		if (value < 0)
+		{
+			value = 0;
+		}
+
+		m_Counts[getBucket(value)]++;
+		m_Total++;
+		if (value > m_Max)
+		{
+			m_Max = value;
+		}
+	}
+
+	///=========================================================================
+	///@return the number of samples
+	///=========================================================================
+	public long getCount()
+	{
+		return m_Total;
+	}
+
+	///=========================================================================
+	///@return the largest sample
+	///=========================================================================
+	public long getMax()
+	{
+		return m_Max;
+	}
+
+	///=========================================================================
+	///@param double percent	e.g. 50 for the median, 99.9
+	///@return the value that many percent of the samples are at or below
+	///		   (rounded up to its bucket, never above the largest sample); 0
+	///		   with no samples
+	///=========================================================================
+	public long getPercentile(double percent)
+	{
+		long rank = (long) Math.ceil(m_Total * percent / 100.0);
+		rank = Math.max(rank, 1);
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i)
+		{
+			seen += m_Counts[i];
+			if (seen >= rank)
+			{
+				return Math.min(getBucketMax(i), m_Max);
+			}
+		}
+
+		return m_Max;
+	}
+}
@@ -0,0 +1,201 @@
+///=============================================================================
+///@file    ImageCache.java
+///@brief   Loads every image of the game once and shares it.
+///=============================================================================
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+///=============================================================================
+///Images are decoded right away (ImageIO) instead of in the background like
+///Toolkit.getImage does, so they are complete the first time they are drawn.
+///Each one is then copied into an image compatible with the screen, in the
+///cheapest format that keeps it intact: OPAQUE when every pixel is opaque
+///(the sky tiles), BITMASK when pixels are either opaque or fully transparent
+///and TRANSLUCENT otherwise (the cars, with their antialiased edges). These
+///are the formats Java2D can blit (and cache in video memory) without
+///converting anything per frame.
+///
+///The images are made for the base resolution; at any other one they are
+///scaled to it when loaded (see PolePosition.setResolution), so nothing
+///scales them while drawing.
+///=============================================================================
+final class ImageCache
+{
+	private static Map<String, Entry> s_Entries = new HashMap<String, Entry>();
+	private static Map<String, ScaledImageSet> s_ScaledSets = new HashMap<String, ScaledImageSet>();
+
+	//what we keep for every path
+	private static class Entry
+	{
+		BufferedImage image;	//screen-compatible copy
+		int[] pixels;			//ARGB pixels (software rendering)
+	}
+
+	private ImageCache()
+	{
+	}
+
+	///=========================================================================
+	///getImage
+	///@param String path	resource path of the image, e.g. "images/car1.png"
+	///@return the image, loaded the first time it is asked for; an image that
+	///		   could not be loaded is replaced by a transparent pixel
+	///=========================================================================
+	static BufferedImage getImage(String path)
+	{
+		return getEntry(path).image;
+	}
+
+	///=========================================================================
+	///getPixels
+	///@param String path	resource path of the image
+	///@return the ARGB pixels of the image, row by row; do not modify them
+	///=========================================================================
+	static int[] getPixels(String path)
+	{
+		return getEntry(path).pixels;
+	}
+
+	///=========================================================================
+	///getScaledSet
+	///@param String path		resource path of the image
+	///@param int minPercent	see ScaledImageSet
+	///@param int maxPercent
+	///@param int stepPercent
+	///@return the image scaled to every size in the range, scaled the first
+	///		   time it is asked for
+	///=========================================================================
+	static synchronized ScaledImageSet getScaledSet(String path, int minPercent, int maxPercent, int stepPercent)
+	{
+		String key = path + "@" + minPercent + ":" + maxPercent + ":" + stepPercent;
+		ScaledImageSet set = s_ScaledSets.get(key);
+
+		if (set == null)
+		{
+			set = new ScaledImageSet(getImage(path), minPercent, maxPercent, stepPercent);
+			s_ScaledSets.put(key, set);
+		}
+
+		return set;
+	}
+
+	private static synchronized Entry getEntry(String path)
+	{
+		Entry entry = s_Entries.get(path);
+
+		if (entry == null)
+		{
+			BufferedImage decoded = load(path);
+			if (PolePosition.APP_WIDTH != PolePosition.BASE_WIDTH || PolePosition.APP_HEIGHT != PolePosition.BASE_HEIGHT)
+			{
+				int scaledW = Math.max(PolePosition.scaleX(decoded.getWidth()), 1);
+				int scaledH = Math.max(PolePosition.scaleY(decoded.getHeight()), 1);
+				decoded = ScaledImageSet.resize(decoded, scaledW, scaledH);
+			}
+
+			int w = decoded.getWidth();
+			int h = decoded.getHeight();
+
+			entry = new Entry();
+			entry.pixels = decoded.getRGB(0, 0, w, h, null, 0, w);
+			entry.image = toCompatible(decoded, entry.pixels);
+			s_Entries.put(path, entry);
+		}
+
+		return entry;
+	}
+
+	///=========================================================================
+	///Decodes an image from the classpath
+	///=========================================================================
+	private static BufferedImage load(String path)
+	{
+		try
+		{
+			URL url = ImageCache.class.getResource(path);
+			BufferedImage image = (url != null) ? ImageIO.read(url) : null;
+			if (image != null)
+			{
+				return image;
+			}
+
+			System.err.println("Could not load image:" + path);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not load image:" + path + " " + ex.toString());
+		}
+
+		return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	///=========================================================================
+	///The least transparency that keeps the given pixels as they are
+	///@param int[] pixels	ARGB pixels
+	///@return Transparency.OPAQUE, BITMASK or TRANSLUCENT
+	///=========================================================================
+	private static int getTransparency(int[] pixels)
+	{
+		int transparency = Transparency.OPAQUE;
+
+		for (int i = 0; i < pixels.length; ++i)
+		{
+			int a = pixels[i] >>> 24;
+
+			if (a == 0)
+			{
+				transparency = Transparency.BITMASK;
+			}
+			else if (a != 0xFF)
+			{
+				return Transparency.TRANSLUCENT;
+			}
+		}
+
+		return transparency;
+	}
+
+	///=========================================================================
+	///Copies an image into one the screen can draw directly. Without a screen
+	///(headless, e.g. benchmarks) we settle for the int RGB/ARGB types our
+	///software paths use.
+	///@param BufferedImage src	the image
+	///@param int[] pixels		its ARGB pixels (to tell its transparency)
+	///@return the copy
+	///=========================================================================
+	static BufferedImage toCompatible(BufferedImage src, int[] pixels)
+	{
+		BufferedImage dst = createCompatible(src.getWidth(), src.getHeight(), getTransparency(pixels));
+
+		Graphics2D g = dst.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(src, 0, 0, null);
+		g.dispose();
+
+		return dst;
+	}
+
+	///=========================================================================
+	///Creates an (empty) image the screen can draw directly
+	///@param int w, h				its size
+	///@param int transparency		Transparency.OPAQUE, BITMASK or TRANSLUCENT
+	///@return the image
+	///=========================================================================
+	static BufferedImage createCompatible(int w, int h, int transparency)
+	{
+		if (GraphicsEnvironment.isHeadless())
+		{
+			int type = (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+			return new BufferedImage(w, h, type);
+		}
+
+		GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		return gc.createCompatibleImage(w, h, transparency);
+	}
+}
@@ -0,0 +1,184 @@
+///=============================================================================
+///@file    InputPlayer.java
+///@brief   Replays a race recorded by InputRecorder.
+///=============================================================================
+
+import java.io.*;
+
+///=============================================================================
+///Build the simulation from what the log says (createSimulation), then call
+///next() before every step: it sets the input of that tick, just like the
+///keys did when the race was recorded.
+///=============================================================================
+class InputPlayer
+{
+	private DataInputStream m_In;
+	private long m_Seed;
+	private int m_Opponents;
+	private int m_TickRate;
+	private String m_TrackFile;		//null for the built-in circuit
+	private int m_Input;			//input of the current run
+	private long m_Run;				//ticks left in it
+	private long m_Ticks;			//ticks replayed
+	private boolean m_Ended;		//no more runs
+	private boolean m_Trailer;		//the log ended with the trailer
+	private long m_EndTicks;		//from the trailer
+	private long m_EndChecksum;
+
+	///=========================================================================
+	///Constructor; reads the header
+	///@param File file		the log to replay
+	///@throws IOException if the file can't be read or is not a log
+	///=========================================================================
+	public InputPlayer(File file) throws IOException
+	{
+		m_In = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+		try
+		{
+			if (m_In.readInt() != InputRecorder.MAGIC)
+			{
+				throw new IOException(file + ": not an input log");
+			}
+
+			int version = m_In.readInt();
+			if (version != InputRecorder.VERSION)
+			{
+				throw new IOException(file + ": unsupported version " + version);
+			}
+
+			m_Seed = m_In.readLong();
+			m_Opponents = m_In.readInt();
+			m_TickRate = m_In.readInt();
+			m_TrackFile = m_In.readUTF();
+			if (m_TrackFile.length() == 0)
+			{
+				m_TrackFile = null;
+			}
+		}
+		catch (IOException ex)
+		{
+			m_In.close();
+			throw ex;
+		}
+
+		m_Run = 0;
+		m_Ticks = 0;
+		m_Ended = false;
+		m_Trailer = false;
+	}
+
+	///=========================================================================
+	///@return ticks per second the race was recorded at
+	///=========================================================================
+	public int getTickRate()
+	{
+		return m_TickRate;
+	}
+
+	///=========================================================================
+	///@return the track file the race was driven on, null for the built-in
+	///		   circuit
+	///=========================================================================
+	public String getTrackFile()
+	{
+		return m_TrackFile;
+	}
+
+	///=========================================================================
+	///@param Track track	the circuit of getTrackFile()
+	///@return the simulation the race was recorded with, at its start
+	///=========================================================================
+	public Simulation createSimulation(Track track)
+	{
+		return new Simulation(track, m_Seed, m_Opponents, m_TickRate);
+	}
+
+	///=========================================================================
+	///Sets the input of the next tick
+	///@param Simulation sim	the simulation about to be stepped
+	///@return false when the race is over (nothing is set)
+	///@throws IOException if the log can't be read
+	///=========================================================================
+	public boolean next(Simulation sim) throws IOException
+	{
+		if (m_Run == 0)
+		{
+			if (m_Ended || !readRun())
+			{
+				return false;
+			}
+		}
+
+		InputRecorder.decode(m_Input, sim);
+		m_Run--;
+		m_Ticks++;
+		return true;
+	}
+
+	///=========================================================================
+	///Reads the next run, or the trailer
+	///@return false at the end of the log
+	///=========================================================================
+	private boolean readRun() throws IOException
+	{
+		int input;
+		try
+		{
+			input = m_In.readUnsignedByte();
+		}
+		catch (EOFException ex)
+		{
+			//cut short (e.g. the game was killed): replay what there is
+			m_Ended = true;
+			m_In.close();
+			return false;
+		}
+
+		if (input == InputRecorder.END)
+		{
+			m_EndTicks = m_In.readLong();
+			m_EndChecksum = m_In.readLong();
+			m_Trailer = true;
+			m_Ended = true;
+			m_In.close();
+			return false;
+		}
+
+		long run = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = m_In.readUnsignedByte();
+			run |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+
+		m_Input = input;
+		m_Run = run;
+		return true;
+	}
+
+	///=========================================================================
+	///Tells whether the replay made the race that was recorded; only once
+	///next() has returned false
+	///@param GameState s	the state after the last tick replayed
+	///@return a line saying so
+	///=========================================================================
+	public String verify(GameState s)
+	{
+		if (!m_Trailer)
+		{
+			return "replayed " + m_Ticks + " ticks (the log has no end to check against)";
+		}
+
+		if (m_Ticks == m_EndTicks && s.checksum() == m_EndChecksum)
+		{
+			return "replayed " + m_Ticks + " ticks: same race";
+		}
+
+		return "replayed " + m_Ticks + " of " + m_EndTicks + " ticks: DIFFERENT race";
+	}
+}
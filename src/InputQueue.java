@@ -0,0 +1,148 @@
+///=============================================================================
+///@file    InputQueue.java
+///@brief   Time-stamped key actions, from the event thread to the game loop.
+///=============================================================================
+
+///=============================================================================
+///Keys are pressed on the event thread while the game loop is halfway through
+///a tick; setting the game state from there would let a tick see half of an
+///input. Instead the event thread pushes what happened, and when, into this
+///ring, and the game loop drains it at the start of each tick: the state only
+///changes in between ticks, in the order the keys were pressed.
+///
+///There is exactly one producer (the event thread) and one consumer (the game
+///loop), so the ring needs no locks: each side only writes its own end
+///(m_Tail, m_Head) and reads the other's. Both ends are volatile, so the
+///slots written before an end moves are visible to the other side once it
+///sees the end move.
+///
+///A key tapped and released between two ticks would never be seen by a tick.
+///A drain therefore stops at the release of a key it has just pressed; the
+///release is left for the next tick, so every tap lasts at least one tick.
+///=============================================================================
+class InputQueue
+{
+	//the actions
+	final public static int STEER_LEFT = 0;
+	final public static int STEER_RIGHT = 1;
+	final public static int GAS = 2;
+	final public static int BRAKE = 3;
+
+	final public static long NONE = Long.MIN_VALUE;	//no time (see drain)
+
+	private int m_Mask;				//capacity - 1, the capacity is a power of 2
+	private long[] m_Time;			//System.nanoTime() of each event
+	private int[] m_Action;			//the action of each event
+	private boolean[] m_Pressed;	//pressed or released
+	private volatile long m_Head;	//next event to drain; written by the consumer only
+	private volatile long m_Tail;	//next free slot; written by the producer only
+
+	///=========================================================================
+	///Constructor
+	///@param int capacity	most events waiting at once (rounded up to a power
+	///						of 2)
+	///=========================================================================
+	public InputQueue(int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		m_Mask = size - 1;
+		m_Time = new long[size];
+		m_Action = new int[size];
+		m_Pressed = new boolean[size];
+		m_Head = 0;
+		m_Tail = 0;
+	}
+
+	///=========================================================================
+	///Adds an event; producer side
+	///@param int action		STEER_LEFT, STEER_RIGHT, GAS or BRAKE
+	///@param boolean pressed	true when pressed, false when released
+	///@param long time			when it happened (System.nanoTime())
+	///@return false if the queue was full and the event was dropped
+	///=========================================================================
+	public boolean push(int action, boolean pressed, long time)
+	{
+		long tail = m_Tail;
+		if (tail - m_Head > m_Mask)
+		{
+			return false;
+		}
+
+		int i = (int) tail & m_Mask;
+		m_Time[i] = time;
+		m_Action[i] = action;
+		m_Pressed[i] = pressed;
+		m_Tail = tail + 1;		//publishes the slot
+		return true;
+	}
+
+	///=========================================================================
+	///Applies the events that happened before a time to the simulation, in
+	///order; consumer side
+	///@param Simulation sim	the simulation to apply them to
+	///@param long until		the end of the tick about to be stepped
+	///						(System.nanoTime()); later events wait
+	///@return when the earliest event applied happened, NONE if there was none
+	///=========================================================================
+	public long drain(Simulation sim, long until)
+	{
+		long head = m_Head;
+		long tail = m_Tail;
+		long earliest = NONE;
+		int pressed = 0;		//the actions pressed by this drain, one bit each
+
+		for (; head < tail; ++head)
+		{
+			int i = (int) head & m_Mask;
+			int action = m_Action[i];
+			if (m_Time[i] - until > 0)
+			{
+				break;
+			}
+
+			if (!m_Pressed[i] && (pressed & (1 << action)) != 0)
+			{
+				break;
+			}
+
+			if (m_Pressed[i])
+			{
+				pressed |= 1 << action;
+			}
+
+			apply(sim, action, m_Pressed[i]);
+			if (earliest == NONE)
+			{
+				earliest = m_Time[i];
+			}
+		}
+
+		m_Head = head;		//frees the slots
+		return earliest;
+	}
+
+	///=========================================================================
+	///One event
+	///=========================================================================
+	private static void apply(Simulation sim, int action, boolean pressed)
+	{
+		switch (action)
+		{
+			case STEER_LEFT:
+				sim.setSteerDirection(pressed ? Player.STEER_LEFT : Player.STEER_NONE);
+				break;
+
+			case STEER_RIGHT:
+				sim.setSteerDirection(pressed ? Player.STEER_RIGHT : Player.STEER_NONE);
+				break;
+
+			case GAS:
+				sim.accelerate(pressed);
+				break;
+
+			case BRAKE:
+				sim.brake(pressed);
+				break;
+		}
+	}
+}
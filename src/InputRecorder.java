@@ -0,0 +1,157 @@
+///=============================================================================
+///@file    InputRecorder.java
+///@brief   Records the input of every tick, to replay a race (InputPlayer).
+///=============================================================================
+
+import java.io.*;
+
+///=============================================================================
+///The simulation is deterministic: the same circuit, seed, number of
+///opponents and input on every tick make the same race. So that's all a log
+///holds; the input is the steering and the two pedals, 4 bits, and it stays
+///the same for many ticks in a row, so it is run-length encoded:
+///
+/// int MAGIC, int VERSION
+/// long seed, int opponents, int tickRate, UTF track file ("" built-in)
+/// { byte input, varint ticks }...		a run of ticks with the same input
+/// byte END, long ticks, long checksum		the race as it ended
+///
+///A minute of driving takes a few hundred bytes. The checksum of the final
+///state (see GameState.checksum) tells whether a replay made the same race.
+///=============================================================================
+class InputRecorder
+{
+	final static int MAGIC = 0x5050494C;	//"PPIL"
+	final static int VERSION = 3;			//2: no banner in GameState.checksum, 3: fractional distance
+	final static int END = 0xFF;			//no input is this
+
+	//the bits of an input
+	final private static int STEER_MASK = 0x3;		//0 none, 1 left, 2 right
+	final private static int GAS = 0x4;
+	final private static int BRAKE = 0x8;
+
+	private DataOutputStream m_Out;		//null once closed
+	private int m_Input;				//input of the current run
+	private long m_Run;					//ticks in it so far
+	private long m_Ticks;				//ticks recorded
+
+	///=========================================================================
+	///Constructor; writes the header
+	///@param File file			the log to write
+	///@param long seed			the simulation's seed
+	///@param int opponents		its opponents
+	///@param int tickRate		ticks per second (replays in real time)
+	///@param String trackFile	its track file, null for the built-in circuit
+	///@throws IOException if the file can't be written
+	///=========================================================================
+	public InputRecorder(File file, long seed, int opponents, int tickRate, String trackFile) throws IOException
+	{
+		m_Out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		m_Out.writeInt(MAGIC);
+		m_Out.writeInt(VERSION);
+		m_Out.writeLong(seed);
+		m_Out.writeInt(opponents);
+		m_Out.writeInt(tickRate);
+		m_Out.writeUTF((trackFile != null) ? trackFile : "");
+		m_Input = -1;
+		m_Run = 0;
+		m_Ticks = 0;
+	}
+
+	///=========================================================================
+	///@param GameState s	a state
+	///@return the input it holds, as recorded
+	///=========================================================================
+	static int encode(GameState s)
+	{
+		int steer = (s.steer == Player.STEER_LEFT) ? 1 : (s.steer == Player.STEER_RIGHT) ? 2 : 0;
+		return steer | (s.accelerating ? GAS : 0) | (s.braking ? BRAKE : 0);
+	}
+
+	///=========================================================================
+	///Applies an input as recorded
+	///@param int input			the input
+	///@param Simulation sim	the simulation to apply it to
+	///=========================================================================
+	static void decode(int input, Simulation sim)
+	{
+		int steer = input & STEER_MASK;
+		sim.setSteerDirection((steer == 1) ? Player.STEER_LEFT : (steer == 2) ? Player.STEER_RIGHT : Player.STEER_NONE);
+		sim.accelerate((input & GAS) != 0);
+		sim.brake((input & BRAKE) != 0);
+	}
+
+	///=========================================================================
+	///Records the input of the tick about to be stepped
+	///@param GameState s	the state about to be stepped
+	///@throws IOException if the file can't be written
+	///=========================================================================
+	public synchronized void record(GameState s) throws IOException
+	{
+		if (m_Out == null)
+		{
+			return;
+		}
+
+		int input = encode(s);
+		if (input != m_Input)
+		{
+			writeRun();
+			m_Input = input;
+		}
+
+		m_Run++;
+		m_Ticks++;
+	}
+
+	///=========================================================================
+	///Ends the log with the race as it is now and closes it; further ticks
+	///are not recorded
+	///@param GameState s	the state after the last tick recorded
+	///@throws IOException if the file can't be written
+	///=========================================================================
+	public synchronized void close(GameState s) throws IOException
+	{
+		if (m_Out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			writeRun();
+			m_Out.writeByte(END);
+			m_Out.writeLong(m_Ticks);
+			m_Out.writeLong(s.checksum());
+		}
+		finally
+		{
+			m_Out.close();
+			m_Out = null;
+		}
+	}
+
+	///=========================================================================
+	///Writes the current run, if any
+	///=========================================================================
+	private void writeRun() throws IOException
+	{
+		if (m_Run == 0)
+		{
+			return;
+		}
+
+		m_Out.writeByte(m_Input);
+
+		//7 bits at a time, lowest first; the high bit says more follow
+		long run = m_Run;
+		while (run >= 0x80)
+		{
+			m_Out.writeByte((int) (run & 0x7F) | 0x80);
+			run >>>= 7;
+		}
+		m_Out.writeByte((int) run);
+
+		m_Run = 0;
+	}
+}
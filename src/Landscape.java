@@ -7,115 +7,216 @@
 ///=============================================================================
 
 import java.awt.*;
+import java.awt.image.*;
 
-class Landscape 
+///=============================================================================
+///The tiles are composed once, at startup, into a panorama that wraps around:
+///its right edge continues into its left edge. Scrolling is then just an
+///offset into it (GameState.landscapeOffset, modulo PERIOD) and the screen,
+///narrower than the panorama, shows at most two pieces of it: the one the
+///offset falls in and the start of it again. A frame costs two blits however
+///far we have scrolled.
+///
+///Several such panoramas (layers) can be stacked for parallax, farthest
+///first; a layer scrolls at 1 / 2^shift the speed of the front one, for the
+///same two blits each.
+///
+///The offset is in base units (see PolePosition.BASE_WIDTH), like the rest of
+///the game state; at other resolutions the tiles come scaled from ImageCache
+///and the offset is scaled to the panorama they make.
+///=============================================================================
+class Landscape implements Drawable 
 {
-	private final int HEIGHT = 1;		//1 tile height
-	private final int WIDTH = 15;		//15 tiles width, 13 to cover the screen + 2 offscreen
-	private final int MAX_TILES = 6;	//6 different tiles representing the landscape
-	private final int TILE_WIDTH = 50;	//tile x-size
-	private final int TILE_HEIGHT = 50;	//tile y-size
-	private Sprite[] m_Tiles;			//the main tileset
-	private int m_Offset = 0;			//to keep track of how much we've scrolled
-	private int[] m_TilePos;			//to keep track of the order to draw the tiles
-	private int[] m_LandscapeMap = {	//map to build the landscape
+	final static int WIDTH = 15;		//15 tiles width, 13 to cover the screen + 2 offscreen
+	final static int MAX_TILES = 6;		//6 different tiles representing the landscape
+	final static int TILE_WIDTH = 50;	//tile x-size
+	final static int TILE_HEIGHT = 50;	//tile y-size
+	final static int PANORAMA_WIDTH = WIDTH * TILE_WIDTH;
+	final static int MAX_SHIFT = 2;		//slowest layer: a quarter of the speed
+	final static int PERIOD = PANORAMA_WIDTH << MAX_SHIFT;	//GameState.landscapeOffset wraps here
+	private static int[] s_LandscapeMap = {	//map to build the landscape
 		0,
 		0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 0,
 		0
 	};
 
+	///=========================================================================
+	///One panorama
+	///=========================================================================
+	private static class Layer
+	{
+		BufferedImage image;	//screen-compatible
+		int[] pixels;			//its ARGB pixels (software rendering)
+		int width;
+		int height;
+		int baseWidth;			//its width at the base resolution
+		int y;					//where its top goes on the screen
+		int shift;				//scrolls at 1 / 2^shift the front layer's speed
+	}
+
+	private Layer[] m_Layers;
+	private int[] m_X;					//x-coord of each piece this frame (see submit)
+	private boolean m_Visible;			//false leaves the sky plain
+
 	///=========================================================================
 	///Default constructor
+	///Builds the sky layer. The scrolling itself is game state and lives in
+	///GameState; this class only knows how to draw it.
 	///=========================================================================
 	Landscape() 
 	{
-		m_Tiles = new Sprite[MAX_TILES];
-		m_TilePos = new int[WIDTH];
+		m_Layers = new Layer[0];
+		m_X = new int[0];
+		m_Visible = true;
+
+		String[] tiles = new String[MAX_TILES];
+		for (int j = 1; j <= MAX_TILES; ++j) 
+		{
+			tiles[j - 1] = "images/sky" + j + ".png";
+		}
+		addLayer(tiles, s_LandscapeMap, PolePosition.SKY_HEIGHT - PolePosition.scaleY(TILE_HEIGHT), 0);
+	}
+
+	///=========================================================================
+	///addLayer()
+	///Composes a row of tiles into a panorama drawn in front of the layers
+	///added before it
+	///@param String[] tiles	resource paths of the tiles, all TILE_WIDTH wide
+	///							at the base resolution
+	///@param int[] map			the tile (index into tiles) at each column
+	///@param int y				y-coord of the top of the layer
+	///@param int shift			scrolls at 1 / 2^shift the speed of the front
+	///							layer (0 to MAX_SHIFT)
+	///@throws IllegalArgumentException if the panorama would not wrap around
+	///		   seamlessly when the offset does (at PERIOD)
+	///=========================================================================
+	public void addLayer(String[] tiles, int[] map, int y, int shift) 
+	{
+		int tileW = ImageCache.getImage(tiles[0]).getWidth();
+		int tileH = ImageCache.getImage(tiles[0]).getHeight();
+		int width = map.length * tileW;
+		int baseWidth = map.length * TILE_WIDTH;
+		if (shift < 0 || shift > MAX_SHIFT || (PERIOD >> shift) % baseWidth != 0) 
+		{
+			throw new IllegalArgumentException("a layer " + baseWidth + " pixels wide can't scroll at 1/" + (1 << shift));
+		}
 
-		//initialize tileset
-		for (int i = 0, j = 1; i < MAX_TILES; ++i, ++j) 
+		BufferedImage panorama = new BufferedImage(width, tileH, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = panorama.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		for (int i = 0; i < map.length; ++i) 
 		{
-			m_Tiles[i] = new Sprite(1);
-			m_Tiles[i].on();
-			m_Tiles[i].addFrame(1, "images/sky" + j + ".png");
+			g.drawImage(ImageCache.getImage(tiles[map[i]]), i * tileW, 0, null);
 		}
+		g.dispose();
+
+		Layer layer = new Layer();
+		layer.pixels = panorama.getRGB(0, 0, width, tileH, null, 0, width);
+		layer.image = ImageCache.toCompatible(panorama, layer.pixels);
+		layer.width = width;
+		layer.height = tileH;
+		layer.baseWidth = baseWidth;
+		layer.y = y;
+		layer.shift = shift;
+
+		Layer[] layers = new Layer[m_Layers.length + 1];
+		System.arraycopy(m_Layers, 0, layers, 0, m_Layers.length);
+		layers[m_Layers.length] = layer;
+		m_Layers = layers;
+		m_X = new int[2 * m_Layers.length];
+	}
+
+	///=========================================================================
+	///Leaves the panorama out of the frames, or puts it back (see
+	///QualityGovernor)
+	///@param boolean visible	false leaves the sky plain
+	///=========================================================================
+	public void setVisible(boolean visible) 
+	{
+		m_Visible = visible;
+	}
 
-		///=====================================================================
-		///initialize the tileset position
-		///originally it goes from 0 to WIDTH-1; later after we scroll the 
-		///positions might change, so we cycle those positions to represent an
-		///infinite scrolling background (e.g. after scrolling 10 tiles left
-		///the array would be: [10,11,12,0,1,2,3,4,5,6,7,8,9]
-		///=====================================================================
-		for (int i = 0; i < WIDTH; ++i) 
+	///=========================================================================
+	///The scroll in between the previous and the current tick; the offset may
+	///have wrapped around at PERIOD on the way
+	///=========================================================================
+	private static int getOffset(GameState prev, GameState cur, float alpha) 
+	{
+		int delta = cur.landscapeOffset - prev.landscapeOffset;
+		if (delta > PERIOD / 2) 
+		{
+			delta -= PERIOD;
+		}
+		else if (delta < -PERIOD / 2) 
 		{
-			m_TilePos[i] = i;
+			delta += PERIOD;
 		}
+
+		int offset = prev.landscapeOffset + (int) (delta * alpha);
+		return (offset < 0) ? offset + PERIOD : offset % PERIOD;
 	}
 
 	///=========================================================================
-	///scrolls the landscape to the left/right
-	///@param int delta	amount of pixels to scroll 
-	///					positive: right scroll
-	///					negative: left scroll
+	///submits the two pieces of every layer in between the previous and the
+	///current tick; a piece that is off screen is culled by the queue
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
 	///=========================================================================
-	public void scroll(int delta) 
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha) 
 	{
-		m_Offset += delta;
+		if (!m_Visible) 
+		{
+			return;
+		}
 
-		if (m_Offset < -TILE_WIDTH || m_Offset > TILE_WIDTH) 
+		int offset = getOffset(prev, cur, alpha);
+
+		for (int i = 0; i < m_Layers.length; ++i) 
 		{
-			//reset offset 
-			m_Offset = 0;
+			Layer layer = m_Layers[i];
+			int key = RenderQueue.key(RenderQueue.LAYER_LANDSCAPE, m_Layers.length - 1 - i);
 
-			//cycle tiles position
-			for (int i = 0; i < WIDTH; ++i) 
+			//the column at x = 0: the panorama starts a tile off screen when
+			//nothing has been scrolled, and scrolling right moves it right
+			int start = (TILE_WIDTH - (offset >> layer.shift)) % layer.baseWidth;
+			if (start < 0) 
 			{
-				//get original position
-				int pos = m_TilePos[i];
-
-				//left-scroll
-				if (delta < 0) 
-				{
-					//cycle to the left by incrementing
-					if (pos++ >= WIDTH - 1) 
-					{
-						pos = 0;
-					}
-				}
-
-				//right-scroll
-				if (delta > 0) 
-				{
-					//cycle to the right by decrementing
-					if (pos-- <= 0) 
-					{
-						pos = WIDTH - 1;
-					}
-				}
-
-				//set new tile position
-				m_TilePos[i] = pos;
+				start += layer.baseWidth;
 			}
+			start = start * layer.width / layer.baseWidth;
+
+			m_X[2 * i] = -start;
+			m_X[2 * i + 1] = layer.width - start;
+			queue.submit(this, 2 * i, key, m_X[2 * i], layer.y, layer.width, layer.height);
+			queue.submit(this, 2 * i + 1, key, m_X[2 * i + 1], layer.y, layer.width, layer.height);
 		}
 	}
 
 	///=========================================================================
-	///draws the landscape
+	///draws a piece of a layer
 	///@param Graphics g	awt.Graphics object to draw into
+	///@param int item		the piece (2 per layer, farthest layer first)
 	///=========================================================================
-	public void draw(Graphics g) 
+	public void draw(Graphics g, int item) 
 	{
-		//since HEIGHT is 1, we don't care about y-coord
-		for (int i = 0, x = -1; i < this.WIDTH; ++i, ++x) 
-		{
-			int t = m_LandscapeMap[m_TilePos[i]];
+		Layer layer = m_Layers[item / 2];
+		g.drawImage(layer.image, m_X[item], layer.y, null);
+	}
 
-			//since x starts at -1 we're actually drawing 1 tile offscreen
-			//to the left and 1 tile offscreen to the right of the screen
-			m_Tiles[t].setX(x * TILE_WIDTH + m_Offset);
-			m_Tiles[t].setY(PolePosition.SKY_HEIGHT - TILE_HEIGHT);
-			m_Tiles[t].draw(g);
-		}
+	///=========================================================================
+	///draws the rows [top, bottom) of a piece of a layer straight into int RGB
+	///pixels
+	///@param int[] pixels		the pixels to draw into
+	///@param int width			pixels per row
+	///@param int top			first row we may draw into
+	///@param int bottom		first row we may not draw into
+	///@param int item			the piece (2 per layer, farthest layer first)
+	///=========================================================================
+	public void draw(int[] pixels, int width, int top, int bottom, int item) 
+	{
+		Layer layer = m_Layers[item / 2];
+		Raster.blit(pixels, width, top, bottom, layer.pixels, layer.width, layer.height, m_X[item], layer.y);
 	}
 }
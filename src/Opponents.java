@@ -0,0 +1,160 @@
+///=============================================================================
+///@file    Opponents.java
+///@brief   Draws the opponent cars.
+///=============================================================================
+
+import java.awt.*;
+
+///=============================================================================
+///The cars are game state (see Traffic); this class only draws them. A car d
+///km ahead of the player stands on scanline NEAREST + (ROAD_HEIGHT - NEAREST)
+///* d / (d + DEPTH) (at the base resolution) and is scaled to the width of
+///the road there, so it shrinks towards the horizon just like the road does.
+///=============================================================================
+class Opponents extends Sprite
+{
+	final public static long VIEW_DISTANCE = 40 * FixedPoint.FP_LONG_ONE;	//km; farther cars aren't drawn
+	final private static long DEPTH = 10 * FixedPoint.FP_LONG_ONE;		//km to halfway to the horizon
+	final private static int NEAREST = 10;		//scanline of the player's wheels (see Animator)
+	final private static int MIN_SCALE = 20;	//% of the farthest car (about)
+	final private static int SCALE_STEP = 2;
+
+	private Track m_Track;
+	private Road m_Road;
+	private ScaledImageSet m_Scaled;	//every size of the car
+
+	//the cars in view this frame, nearest first (see submit)
+	private int m_Count;
+	private int[] m_X;
+	private int[] m_Y;
+	private int[] m_Scale;
+
+	///=========================================================================
+	///Constructor
+	///@param Track track	the circuit the cars race on
+	///@param Road road		the road they stand on
+	///=========================================================================
+	public Opponents(Track track, Road road)
+	{
+		super(1);
+		m_Track = track;
+		m_Road = road;
+		m_Count = 0;
+		m_X = new int[0];
+		m_Y = new int[0];
+		m_Scale = new int[0];
+	}
+
+	///=========================================================================
+	///addFrame()
+	///adds the car image along with all of its scaled versions
+	///@param int frameNum the frame number (1)
+	///@param String path the absolute path to the image
+	///=========================================================================
+	@Override
+	public void addFrame(int frameNum, String path)
+	{
+		super.addFrame(frameNum, path);
+		m_Scaled = ImageCache.getScaledSet(path, MIN_SCALE, 100, SCALE_STEP);
+	}
+
+	///=========================================================================
+	///The scanline something on the road stands on
+	///@param long ahead	km it is ahead of the player, 32.32 (> -DEPTH)
+	///@return the scanline at the base resolution, 0 being the bottom one;
+	///		   < 0 below the screen
+	///=========================================================================
+	static int getBaseLine(long ahead)
+	{
+		return NEAREST + (int) ((PolePosition.BASE_ROAD_HEIGHT - NEAREST) * ahead / (ahead + DEPTH));
+	}
+
+	///=========================================================================
+	///Works out where the cars in view are and how large, in between the
+	///previous and the current tick, and submits them farthest first
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	@Override
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha)
+	{
+		int n = cur.opponents;
+		if (m_X.length < n)
+		{
+			m_X = new int[n];
+			m_Y = new int[n];
+			m_Scale = new int[n];
+		}
+
+		long length = FixedPoint.LongFromInt(m_Track.getLength());
+		long player = m_Track.interpolate(prev.distance, cur.distance, alpha);
+		int first = Traffic.find(cur, player);
+
+		//the cars ahead of the player, nearest first
+		m_Count = 0;
+		for (int k = 0; k < n; ++k)
+		{
+			int i = (first + k < n) ? first + k : first + k - n;
+			int p = prev.oppPlace[cur.oppId[i]];
+			long ahead = m_Track.interpolate(prev.oppDistance[p], cur.oppDistance[i], alpha) - player;
+			if (ahead < 0)
+			{
+				ahead += length;
+			}
+
+			//a car that is just behind once interpolated
+			if (ahead > length / 2)
+			{
+				continue;
+			}
+
+			if (ahead > VIEW_DISTANCE)
+			{
+				break;
+			}
+
+			int base = getBaseLine(ahead);
+			int j = base * PolePosition.ROAD_HEIGHT / PolePosition.BASE_ROAD_HEIGHT;
+			int width = m_Road.getWidth(j);
+			int lane = prev.oppLane[p] + (int) ((cur.oppLane[i] - prev.oppLane[p]) * alpha);
+			int scale = width * 100 / PolePosition.APP_WIDTH;
+			int x = m_Road.getCenter(j, prev, cur, alpha) + lane * width / PolePosition.BASE_WIDTH;
+
+			m_X[m_Count] = x - m_Scaled.getWidth(scale) / 2;
+			m_Y[m_Count] = PolePosition.APP_HEIGHT - j - m_Scaled.getHeight(scale);
+			m_Scale[m_Count] = scale;
+			++m_Count;
+		}
+
+		for (int k = m_Count - 1; k >= 0; --k)
+		{
+			int scale = m_Scale[k];
+			int h = m_Scaled.getHeight(scale);
+			queue.submit(this, k, RenderQueue.key(RenderQueue.LAYER_OBJECTS, PolePosition.APP_HEIGHT - (m_Y[k] + h)), m_X[k], m_Y[k], m_Scaled.getWidth(scale), h, scale, false);
+		}
+	}
+
+	///=========================================================================
+	///draws a car submitted
+	///@param Graphics g	a awt.Graphics object to draw into
+	///@param int item		the car (0 is the nearest one)
+	///=========================================================================
+	@Override
+	public void draw(Graphics g, int item)
+	{
+		g.drawImage(m_Scaled.getImage(m_Scale[item]), m_X[item], m_Y[item], null);
+	}
+
+	///=========================================================================
+	///draws the rows [top, bottom) of a car submitted straight into int RGB
+	///pixels
+	///=========================================================================
+	@Override
+	public void draw(int[] pixels, int width, int top, int bottom, int item)
+	{
+		int scale = m_Scale[item];
+		Raster.blit(pixels, width, top, bottom, m_Scaled.getPixels(scale), m_Scaled.getWidth(scale), m_Scaled.getHeight(scale), m_X[item], m_Y[item]);
+	}
+}
@@ -24,111 +24,28 @@ class Player extends Sprite
 	final public static int ACCEL = 5;			//km per second
 	final public static int BRAKE = 30;			//km per second
 
-	private int m_Steer;
-	private int m_Speed;
-	private boolean m_Accelerating;
-	private boolean m_Braking;
-
 	///=========================================================================
 	///Default constructor
+	///The player's state (speed, steering, pedals) is game state and lives
+	///in GameState; this class only holds the car's frames.
 	///@param int numFrames number of frames desired
 	///=========================================================================
 	Player(int numFrames) 
 	{
 		super(numFrames);
-		m_Steer = STEER_NONE;
-		m_Speed = 0;
-		m_Accelerating = false;
-		m_Braking = false;
-	}
-
-	///=========================================================================
-	///Changes steering direction
-	///@param int direction steer direction
-	///=========================================================================
-	public void setSteerDirection(int direction) 
-	{
-		m_Steer = direction;
-	}
-
-	///=========================================================================
-	///Changes steering direction
-	///@returns steer direction
-	///=========================================================================
-	public int getSteerDirection() 
-	{
-		return m_Steer;
-	}
-
-	///=========================================================================
-	///Sets accelerating flag to true to increment speed
-	///=========================================================================
-	public void accelerate() 
-	{
-		m_Accelerating = true;
-	}
-
-	///=========================================================================
-	///Setd accelerating flag to false to decrement speed
-	///=========================================================================
-	public void deaccelerate() 
-	{
-		m_Accelerating = false;
-	}
-
-	///=========================================================================
-	///Checks if player is accelerating (pushing the gas pedal)
-	///@returns true when accelerating, false otherwise
-	///=========================================================================
-	public boolean isAccelerating() 
-	{
-		return m_Accelerating;
-	}
-
-	///=========================================================================
-	///Sets player's speed
-	///@param int speed desired speed in Km/h
-	///=========================================================================
-	public void setSpeed(int speed) 
-	{
-		//speed kills!
-		if (speed > MAX_SPEED) 
-		{
-			return;
-		}
-
-		if (speed < 0) 
-		{
-			return;
-		}
-
-		m_Speed = speed;
-	}
-
-	///=========================================================================
-	///getSpeed
-	///@returns the current player's speed
-	///=========================================================================
-	public int getSpeed() 
-	{
-		return m_Speed;
-	}
-
-	///=========================================================================
-	///Sets the braking flag to true to stop the car
-	///@param boolean status	true/false uses or not the breaks
-	///=========================================================================
-	public void brake(boolean status) 
-	{
-		m_Braking = status;
 	}
 
 	///=========================================================================
-	///Checks if player is braking
-	///@returns true if player is braking, flase otherwise
+	///submits the frame the state asks for
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
 	///=========================================================================
-	public boolean isBraking() 
+	@Override
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha) 
 	{
-		return m_Braking;
+		selFrame(cur.frame);
+		super.submit(queue, prev, cur, alpha);
 	}
 }
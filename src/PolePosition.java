@@ -12,11 +12,18 @@ import javax.swing.*;
 
 public class PolePosition extends JFrame 
 {
-	//game application window size
-	final static int APP_WIDTH = 640;
-	final static int APP_HEIGHT = 480;
-	final static int SKY_HEIGHT = 280;
-	final static int ROAD_HEIGHT = 200;
+	//the size the game is made for: the rules (Simulation, Track, Traffic)
+	//and the images work in these units whatever the resolution
+	final static int BASE_WIDTH = 640;
+	final static int BASE_HEIGHT = 480;
+	final static int BASE_SKY_HEIGHT = 280;
+	final static int BASE_ROAD_HEIGHT = 200;
+	//the size frames are drawn at; set once at startup (see setResolution),
+	//before anything is built, and never changed afterwards
+	static int APP_WIDTH = BASE_WIDTH;
+	static int APP_HEIGHT = BASE_HEIGHT;
+	static int SKY_HEIGHT = BASE_SKY_HEIGHT;
+	static int ROAD_HEIGHT = BASE_ROAD_HEIGHT;
 	//game colors
 	final static Color SKY_COLOR = new Color(32, 32, 224);
 	final static Color GRASS_COLOR = new Color(0, 150, 0);
@@ -29,22 +36,74 @@ public class PolePosition extends JFrame
 	}
 
 	public PolePosition(String title) 
+	{
+		this(title, APP_WIDTH, APP_HEIGHT);
+	}
+
+	public PolePosition(String title, int width, int height) 
 	{
 		//create a JFrame with title
 		super(title);
 
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
-		setBounds(0, 0, APP_WIDTH, APP_HEIGHT + 30);
+		setBounds(0, 0, width, height + 30);
 		setResizable(false);
 	}
 
+	///=========================================================================
+	///Sets the size frames are drawn at; the sky keeps its share of the
+	///screen. Call it before building anything that draws (images, Road,
+	///HUD...): they scale what they draw from the base size when built.
+	///@param int width		frame width
+	///@param int height	frame height
+	///=========================================================================
+	static void setResolution(int width, int height) 
+	{
+		APP_WIDTH = width;
+		APP_HEIGHT = height;
+		SKY_HEIGHT = scaleY(BASE_SKY_HEIGHT);
+		ROAD_HEIGHT = APP_HEIGHT - SKY_HEIGHT;
+	}
+
+	///=========================================================================
+	///@param int x		a length or x-coord in base units (e.g. GameState.scroll)
+	///@return the same on screen
+	///=========================================================================
+	static int scaleX(int x) 
+	{
+		return x * APP_WIDTH / BASE_WIDTH;
+	}
+
+	///=========================================================================
+	///@param int y		a length or y-coord in base units
+	///@return the same on screen
+	///=========================================================================
+	static int scaleY(int y) 
+	{
+		return y * APP_HEIGHT / BASE_HEIGHT;
+	}
+
 	public static void main(String args[]) 
 	{
+		//the passive (repaint-driven) renderer is kept as a fallback for
+		//systems where active rendering misbehaves: "-passive"
+		//simulation and render rates: "-tickrate <hz>" and "-fps <hz>"
+		//multithreaded software rendering: "-software"
+		//frame timings to a CSV file: "-stats <file>" "-statsperiod <s>"
+		//window size: "-resolution <w>x<h>"; frames drawn smaller and
+		//blown up to it: "-render <w>x<h>", or half of it: "-performance"
+		//record the race's input / watch a recorded race: "-record <file>"
+		//"-replay <file>"
+		//drawing quality: lowered while frames are too slow, or kept at a
+		//level with "-quality <level>" (0 = full)
+		Settings settings = Settings.parse(args);
+		setResolution(settings.getRenderWidth(), settings.getRenderHeight());
+
 		//create the animated canvas
-		final Animator animator = new Animator();
+		final Animator animator = new Animator(settings);
 
 		//create an instance of PolePosition
-		PolePosition polePos = new PolePosition("PolePosition demo by VerMan");
+		PolePosition polePos = new PolePosition("PolePosition demo by VerMan", settings.width, settings.height);
 		polePos.add(animator);
 		polePos.setVisible(true);
 
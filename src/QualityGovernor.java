@@ -0,0 +1,188 @@
+///=============================================================================
+///@file    QualityGovernor.java
+///@brief   Lowers the drawing quality while frames take too long.
+///=============================================================================
+
+///=============================================================================
+///Frame times are judged WINDOW frames at a time. A window with MISSES frames
+///over BUDGET (a tick at the default tick rate: slower frames show the game
+///jumping) takes the quality a level down; only when CALM windows in a row
+///had every frame under half the budget does it go a level up again. The gap
+///in between keeps the level from flapping, and so does going back up more
+///reluctantly each time the level it left proves too slow again. That
+///reluctance wears off again, by half every STEADY windows in a row without
+///going down, so a slow spell long ago doesn't hold the quality back later.
+///
+///Every level leaves out more than the one before; what each means is up to
+///the drawables (see Animator.setQuality). Like FrameStats this class has no
+///AWT dependency and allocates nothing per frame; it is used by the thread
+///drawing the frames.
+///=============================================================================
+class QualityGovernor
+{
+	//the levels
+	final public static int FULL = 0;
+	final public static int FEWER_OBJECTS = 1;		//the far roadside objects are left out
+	final public static int HALF_ROAD = 2;			//the road is drawn every other scanline
+	final public static int NO_LANDSCAPE = 3;		//the sky is left plain
+	final public static int LEVELS = 4;
+
+	final public static long BUDGET = 40000000L;		//ns a frame may take
+
+	final private static int WINDOW = 25;			//frames judged at once
+	final private static int MISSES = 3;			//frames over budget in a window to go down
+	final private static int CALM = 3;				//windows with headroom to go up
+	final private static int MAX_CALM = 48;
+	final private static int STEADY = 2 * MAX_CALM;	//windows without going down to halve the patience
+
+	final private static String[] NAMES = { "full", "fewer objects", "half road", "no landscape" };
+
+	private boolean m_Adaptive;		//false keeps the level it was given
+	private volatile int m_Level;	//read by others for diagnostics
+	private int m_Changes;			//level changes so far
+
+	//the window so far
+	private int m_Frames;
+	private int m_Misses;
+	private long m_Slowest;
+
+	private int m_Calm;				//windows in a row with headroom
+	private int m_Patience;			//of them needed to go up
+	private boolean m_WentUp;		//the last change was up, a window or less ago
+	private int m_Steady;			//windows in a row without going down
+
+	///=========================================================================
+	///Constructor
+	///@param int level		a level to keep whatever the frame times, or -1
+	///						to start at FULL and follow them
+	///=========================================================================
+	public QualityGovernor(int level)
+	{
+		m_Adaptive = (level < 0);
+		m_Level = m_Adaptive ? FULL : Math.min(level, LEVELS - 1);
+		m_Changes = 0;
+		m_Patience = CALM;
+		m_WentUp = false;
+		m_Calm = 0;
+		m_Steady = 0;
+		startWindow();
+	}
+
+	///=========================================================================
+	///Forgets the window so far
+	///=========================================================================
+	private void startWindow()
+	{
+		m_Frames = 0;
+		m_Misses = 0;
+		m_Slowest = 0;
+	}
+
+	///=========================================================================
+	///Counts a frame, and changes the level at the end of a window if the
+	///frames call for it
+	///@param long time		how long the frame took (ns)
+	///=========================================================================
+	public void record(long time)
+	{
+		if (!m_Adaptive)
+		{
+			return;
+		}
+
+		m_Frames++;
+		if (time > BUDGET)
+		{
+			m_Misses++;
+		}
+		m_Slowest = Math.max(m_Slowest, time);
+
+		if (m_Frames < WINDOW)
+		{
+			return;
+		}
+
+		boolean wentUp = m_WentUp;
+		m_WentUp = false;
+
+		if (m_Misses >= MISSES)
+		{
+			m_Calm = 0;
+			m_Steady = 0;
+			if (m_Level < LEVELS - 1)
+			{
+				//the level we just went up to is still too slow: wait
+				//longer before trying it again
+				if (wentUp)
+				{
+					m_Patience = Math.min(2 * m_Patience, MAX_CALM);
+				}
+				setLevel(m_Level + 1);
+			}
+		}
+		else if (m_Slowest < BUDGET / 2 && m_Level > FULL)
+		{
+			if (++m_Calm >= m_Patience)
+			{
+				m_Calm = 0;
+				m_WentUp = true;
+				setLevel(m_Level - 1);
+			}
+		}
+		else
+		{
+			m_Calm = 0;
+		}
+
+		//long enough without trouble: the last slow spell is over
+		if (m_Misses < MISSES && ++m_Steady >= STEADY)
+		{
+			m_Steady = 0;
+			m_Patience = Math.max(m_Patience / 2, CALM);
+		}
+
+		startWindow();
+	}
+
+	///=========================================================================
+	///Changes the level
+	///=========================================================================
+	private void setLevel(int level)
+	{
+		m_Level = level;
+		m_Changes++;
+	}
+
+	///=========================================================================
+	///@return the level the frames are drawn at now (FULL...)
+	///=========================================================================
+	public int getLevel()
+	{
+		return m_Level;
+	}
+
+	///=========================================================================
+	///@return how many times the level changed
+	///=========================================================================
+	public int getChanges()
+	{
+		return m_Changes;
+	}
+
+	///=========================================================================
+	///@return whether the level follows the frame times
+	///=========================================================================
+	public boolean isAdaptive()
+	{
+		return m_Adaptive;
+	}
+
+	///=========================================================================
+	///@param int level		a level
+	///@return its name
+	///=========================================================================
+	public static String getName(int level)
+	{
+		return NAMES[level];
+	}
+}
@@ -0,0 +1,261 @@
+///=============================================================================
+///@file    Raster.java
+///@brief   Software drawing primitives on int-packed RGB pixels.
+///=============================================================================
+
+import java.util.Arrays;
+
+///=============================================================================
+///Every primitive draws only the rows in [top, bottom) so that a frame can be
+///split into horizontal bands and each band drawn by a different thread.
+///Destination pixels are 0xRRGGBB (alpha ignored); source pixels are ARGB.
+///=============================================================================
+final class Raster
+{
+	private Raster()
+	{
+	}
+
+	///=========================================================================
+	///Fills a rectangle with a color
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int x, y, w, h	the rectangle
+	///@param int rgb		the color
+	///=========================================================================
+	static void fill(int[] pixels, int width, int top, int bottom, int x, int y, int w, int h, int rgb)
+	{
+		int x0 = Math.max(x, 0);
+		int x1 = Math.min(x + w, width);
+		int y0 = Math.max(y, top);
+		int y1 = Math.min(y + h, bottom);
+
+		if (x0 >= x1)
+		{
+			return;
+		}
+
+		for (int row = y0; row < y1; ++row)
+		{
+			Arrays.fill(pixels, row * width + x0, row * width + x1, rgb);
+		}
+	}
+
+	///=========================================================================
+	///Draws an ARGB image (unscaled) with alpha blending
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int[] src		ARGB pixels of the image
+	///@param int srcW		image width
+	///@param int srcH		image height
+	///@param int x, y		where to draw the image
+	///=========================================================================
+	static void blit(int[] pixels, int width, int top, int bottom, int[] src, int srcW, int srcH, int x, int y)
+	{
+		int x0 = Math.max(x, 0);
+		int x1 = Math.min(x + srcW, width);
+		int y0 = Math.max(y, top);
+		int y1 = Math.min(y + srcH, bottom);
+
+		for (int row = y0; row < y1; ++row)
+		{
+			int d = row * width + x0;
+			int s = (row - y) * srcW + (x0 - x);
+			for (int col = x0; col < x1; ++col, ++d, ++s)
+			{
+				pixels[d] = blend(pixels[d], src[s]);
+			}
+		}
+	}
+
+	///=========================================================================
+	///Draws only the given columns of each row of an ARGB image (unscaled)
+	///with alpha blending; used for mostly transparent images (see spans())
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int[] src		ARGB pixels of the image
+	///@param int srcW		image width
+	///@param int srcH		image height
+	///@param int x, y		where to draw the image
+	///@param int[] from	first column to draw of each image row
+	///@param int[] to		first column not to draw of each image row
+	///=========================================================================
+	static void blitSpans(int[] pixels, int width, int top, int bottom, int[] src, int srcW, int srcH, int x, int y, int[] from, int[] to)
+	{
+		int y0 = Math.max(y, top);
+		int y1 = Math.min(y + srcH, bottom);
+
+		for (int row = y0; row < y1; ++row)
+		{
+			int r = row - y;
+			int x0 = Math.max(x + from[r], 0);
+			int x1 = Math.min(x + to[r], width);
+			int d = row * width + x0;
+			int s = r * srcW + (x0 - x);
+			for (int col = x0; col < x1; ++col, ++d, ++s)
+			{
+				pixels[d] = blend(pixels[d], src[s]);
+			}
+		}
+	}
+
+	///=========================================================================
+	///Finds the columns of each row of an ARGB image that are not fully
+	///transparent (for blitSpans()); a blank row gets an empty span
+	///@param int[] src		ARGB pixels of the image
+	///@param int srcW		image width
+	///@param int top		first row to look at
+	///@param int bottom	first row not to look at
+	///@param int[] from	receives the first visible column of each row
+	///@param int[] to		receives the last visible column + 1 of each row
+	///=========================================================================
+	static void spans(int[] src, int srcW, int top, int bottom, int[] from, int[] to)
+	{
+		for (int row = top; row < bottom; ++row)
+		{
+			int first = srcW;
+			int last = 0;
+			for (int col = 0, s = row * srcW; col < srcW; ++col, ++s)
+			{
+				if ((src[s] >>> 24) != 0)
+				{
+					first = Math.min(first, col);
+					last = col + 1;
+				}
+			}
+
+			from[row] = Math.min(first, last);
+			to[row] = last;
+		}
+	}
+
+	///=========================================================================
+	///Draws an ARGB image scaled to w x h (nearest neighbour) with alpha
+	///blending
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int[] src		ARGB pixels of the image
+	///@param int srcW		image width
+	///@param int srcH		image height
+	///@param int x, y, w, h	where to draw the image and its size
+	///=========================================================================
+	static void blitScaled(int[] pixels, int width, int top, int bottom, int[] src, int srcW, int srcH, int x, int y, int w, int h)
+	{
+		if (w <= 0 || h <= 0)
+		{
+			return;
+		}
+
+		int x0 = Math.max(x, 0);
+		int x1 = Math.min(x + w, width);
+		int y0 = Math.max(y, top);
+		int y1 = Math.min(y + h, bottom);
+
+		for (int row = y0; row < y1; ++row)
+		{
+			int d = row * width + x0;
+			int s = ((row - y) * srcH / h) * srcW;
+			for (int col = x0; col < x1; ++col, ++d)
+			{
+				pixels[d] = blend(pixels[d], src[s + (col - x) * srcW / w]);
+			}
+		}
+	}
+
+	///=========================================================================
+	///Copies an opaque image scaled to the whole of the pixels (nearest
+	///neighbour). A row showing the same image row as the one above it is
+	///copied from it, and twice the width (-performance) has a loop of its
+	///own that doubles every pixel instead of looking its column up.
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int height	rows
+	///@param int[] src		RGB pixels of the image
+	///@param int srcW		image width
+	///@param int srcH		image height
+	///@param int[] columns	the image column of each column (see getColumns)
+	///=========================================================================
+	static void scale(int[] pixels, int width, int height, int[] src, int srcW, int srcH, int[] columns)
+	{
+		int last = -1;
+		for (int row = 0; row < height; ++row)
+		{
+			int d = row * width;
+			int srcRow = row * srcH / height;
+			if (srcRow == last)
+			{
+				System.arraycopy(pixels, d - width, pixels, d, width);
+				continue;
+			}
+
+			int s = srcRow * srcW;
+			if (width == 2 * srcW)
+			{
+				for (int col = 0; col < srcW; ++col, d += 2)
+				{
+					int rgb = src[s + col];
+					pixels[d] = rgb;
+					pixels[d + 1] = rgb;
+				}
+			}
+			else
+			{
+				for (int col = 0; col < width; ++col)
+				{
+					pixels[d + col] = src[s + columns[col]];
+				}
+			}
+			last = srcRow;
+		}
+	}
+
+	///=========================================================================
+	///@param int width		pixels per row to scale to
+	///@param int srcW		image width
+	///@return the image column of each column (see scale)
+	///=========================================================================
+	static int[] getColumns(int width, int srcW)
+	{
+		int[] columns = new int[width];
+		for (int col = 0; col < width; ++col)
+		{
+			columns[col] = col * srcW / width;
+		}
+
+		return columns;
+	}
+
+	///=========================================================================
+	///Blends an ARGB color over an RGB one
+	///@param int dst	the color underneath
+	///@param int src	the color on top (with alpha)
+	///@return the blended color
+	///=========================================================================
+	static int blend(int dst, int src)
+	{
+		int a = src >>> 24;
+
+		if (a == 0xFF)
+		{
+			return src;
+		}
+
+		if (a == 0)
+		{
+			return dst;
+		}
+
+		int na = 0xFF - a;
+		int rb = ((src & 0xFF00FF) * a + (dst & 0xFF00FF) * na) >>> 8;
+		int g = ((src & 0x00FF00) * a + (dst & 0x00FF00) * na) >>> 8;
+		return (rb & 0xFF00FF) | (g & 0x00FF00);
+	}
+}
@@ -0,0 +1,412 @@
+///=============================================================================
+///@file    RenderQueue.java
+///@brief   Draw commands, culled and sorted back to front.
+///=============================================================================
+
+import java.awt.*;
+import java.util.Arrays;
+
+///=============================================================================
+///Commands are kept in parallel arrays that are reused from frame to frame,
+///so a frame allocates nothing once the arrays are large enough. A command
+///whose bounds miss the screen is dropped as it is submitted, before it costs
+///a single Graphics call.
+///
+///The draw order is a single long per command: its key (layer, then depth)
+///in the high half and its submission number in the low half, which keeps
+///commands with the same key in the order they came in. Sorting the longs
+///sorts the commands. Drawables submit their items roughly back to front
+///already (layer by layer, far things first), so an insertion sort finds the
+///longs almost in order and sorts them in about linear time.
+///
+///Most of a frame often looks just like the one before (the sky while the
+///player drives straight, everything while the player is stopped), so when
+///the frame is drawn into an image that keeps its pixels we only draw what
+///changed. The screen is cut into bands of BAND_HEIGHT rows. Every command
+///carries a look: what the drawable says it looks like beyond its bounds (a
+///sprite frame, a scale, the road's scroll and stripes...). findDirty hashes
+///the looks and bounds of the commands covering each band, in draw order, and
+///compares the hash with the one of what the band shows; only the bands
+///whose hashes differ are drawn again. It's a 64-bit hash, so a band that
+///changed and still hashes the same is as good as impossible.
+///=============================================================================
+class RenderQueue
+{
+	//layers, back to front
+	final public static int LAYER_LANDSCAPE = 0;
+	final public static int LAYER_ROAD = 1;
+	final public static int LAYER_OBJECTS = 2;		//things on the road, by depth
+	final public static int LAYER_HUD = 3;
+
+	final private static int DEPTH_BITS = 24;
+	final public static int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+
+	final public static int BAND_HEIGHT = 16;		//rows of a band (see findDirty)
+
+	final private static int INITIAL_CAPACITY = 64;
+	final private static long SEED = 0xCBF29CE484222325L;
+
+	private int m_Count;			//commands submitted
+	private int m_Culled;			//commands dropped since the last clear()
+	private long[] m_Order;			//key << 32 | command, sorted by sort()
+	private Drawable[] m_Drawables;	//by command
+	private int[] m_Items;
+	private int[] m_Y;				//rows the command covers (band culling)
+	private int[] m_Bottom;
+	private boolean[] m_Raster;		//draw into pixels when we have them
+	private long[] m_Looks;			//hash of what the command draws and where
+	private long[] m_Bands;			//hash of what each band will show (findDirty)
+	private long[] m_Shown;			//and of what it shows
+	private boolean[] m_Stale;		//bands whose pixels are unknown (invalidate)
+	private boolean[] m_Dirty;		//bands to draw this frame
+	private FrameStats m_Stats;		//times the drawables, or null (see setStats)
+	private Drawable[] m_Timed;
+
+	///=========================================================================
+	///Default constructor
+	///=========================================================================
+	public RenderQueue()
+	{
+		allocate(INITIAL_CAPACITY);
+		m_Stats = null;
+		m_Timed = null;
+
+		int bands = (PolePosition.APP_HEIGHT + BAND_HEIGHT - 1) / BAND_HEIGHT;
+		m_Bands = new long[bands];
+		m_Shown = new long[bands];
+		m_Stale = new boolean[bands];
+		m_Dirty = new boolean[bands];
+		invalidate();
+	}
+
+	///=========================================================================
+	///The key of something in a layer
+	///@param int layer		LAYER_LANDSCAPE, LAYER_ROAD, LAYER_OBJECTS or LAYER_HUD
+	///@param int depth		how far it is, 0 being the nearest (0 to MAX_DEPTH);
+	///						e.g. the rows between its base and the bottom of
+	///						the screen for things standing on the road
+	///@return the key; commands are drawn by increasing key
+	///=========================================================================
+	public static int key(int layer, int depth)
+	{
+		depth = Math.max(0, Math.min(depth, MAX_DEPTH));
+		return (layer << DEPTH_BITS) | (MAX_DEPTH - depth);
+	}
+
+	///=========================================================================
+	///Drops every command, to start a new frame
+	///=========================================================================
+	public void clear()
+	{
+		m_Count = 0;
+		m_Culled = 0;
+	}
+
+	///=========================================================================
+	///@return the commands that will be drawn
+	///=========================================================================
+	public int size()
+	{
+		return m_Count;
+	}
+
+	///=========================================================================
+	///@return the commands culled since the last clear()
+	///=========================================================================
+	public int getCulled()
+	{
+		return m_Culled;
+	}
+
+	///=========================================================================
+	///Submits a command, unless its bounds are all off screen
+	///@param Drawable drawable	what draws it
+	///@param int item			what to draw (see Drawable)
+	///@param int key			draw order (see key())
+	///@param int x, y, w, h	bounds of what gets drawn
+	///@param long look			what it looks like: two commands of a drawable
+	///							with the same look and bounds draw the same
+	///							pixels (see findDirty)
+	///@param boolean raster	the drawable would rather draw into pixels
+	///=========================================================================
+	public void submit(Drawable drawable, int item, int key, int x, int y, int w, int h, long look, boolean raster)
+	{
+		if (w <= 0 || h <= 0 || x >= PolePosition.APP_WIDTH || y >= PolePosition.APP_HEIGHT || x + w <= 0 || y + h <= 0)
+		{
+			++m_Culled;
+			return;
+		}
+
+		if (m_Count == m_Items.length)
+		{
+			grow();
+		}
+
+		int c = m_Count++;
+		m_Order[c] = ((long) key << 32) | c;
+		m_Drawables[c] = drawable;
+		m_Items[c] = item;
+		m_Y[c] = y;
+		m_Bottom[c] = y + h;
+		m_Raster[c] = raster;
+
+		long hash = mix(mix(mix(mix(mix(SEED, System.identityHashCode(drawable)), look), x), y), w);
+		m_Looks[c] = avalanche(mix(hash, h));
+	}
+
+	///=========================================================================
+	///Same as above, for items that look the same wherever they are drawn
+	///(e.g. a sprite frame): the item is the look
+	///=========================================================================
+	public void submit(Drawable drawable, int item, int key, int x, int y, int w, int h, boolean raster)
+	{
+		submit(drawable, item, key, x, y, w, h, item, raster);
+	}
+
+	///=========================================================================
+	///Same as above, for drawables that draw with Graphics
+	///=========================================================================
+	public void submit(Drawable drawable, int item, int key, int x, int y, int w, int h)
+	{
+		submit(drawable, item, key, x, y, w, h, item, false);
+	}
+
+	///=========================================================================
+	///Forgets what the image drawn into shows: every band is drawn by the
+	///next frame (e.g. the first one, or after something else drew over it)
+	///=========================================================================
+	public void invalidate()
+	{
+		Arrays.fill(m_Stale, true);
+	}
+
+	///=========================================================================
+	///Same as above, for the rows [top, bottom) only
+	///=========================================================================
+	public void invalidate(int top, int bottom)
+	{
+		int first = Math.max(top, 0) / BAND_HEIGHT;
+		int last = (Math.min(bottom, PolePosition.APP_HEIGHT) - 1) / BAND_HEIGHT;
+		for (int b = first; b <= last; ++b)
+		{
+			m_Stale[b] = true;
+		}
+	}
+
+	///=========================================================================
+	///Finds the bands of the sorted commands that don't look like what the
+	///image drawn into shows; the caller must then draw every one of them
+	///(see isDirty), which is what the image will show from then on
+	///@return the number of bands to draw
+	///=========================================================================
+	public int findDirty()
+	{
+		long[] bands = m_Bands;
+		Arrays.fill(bands, SEED);
+
+		for (int i = 0; i < m_Count; ++i)
+		{
+			int c = (int) m_Order[i];
+			long look = m_Looks[c];
+			int first = Math.max(m_Y[c], 0) / BAND_HEIGHT;
+			int last = (Math.min(m_Bottom[c], PolePosition.APP_HEIGHT) - 1) / BAND_HEIGHT;
+			for (int b = first; b <= last; ++b)
+			{
+				bands[b] = mix(bands[b], look);
+			}
+		}
+
+		int dirty = 0;
+		for (int b = 0; b < bands.length; ++b)
+		{
+			m_Dirty[b] = m_Stale[b] || bands[b] != m_Shown[b];
+			if (m_Dirty[b])
+			{
+				++dirty;
+			}
+			m_Shown[b] = bands[b];
+			m_Stale[b] = false;
+		}
+
+		return dirty;
+	}
+
+	///=========================================================================
+	///@return the number of bands
+	///=========================================================================
+	public int getBands()
+	{
+		return m_Bands.length;
+	}
+
+	///=========================================================================
+	///@param int band	a band; its rows are [band * BAND_HEIGHT, min((band + 1)
+	///					* BAND_HEIGHT, APP_HEIGHT))
+	///@return whether the last findDirty() found it has to be drawn
+	///=========================================================================
+	public boolean isDirty(int band)
+	{
+		return m_Dirty[band];
+	}
+
+	//FNV-1a style, a long at a time
+	private static long mix(long h, long value)
+	{
+		return (h ^ value) * 0x100000001B3L;
+	}
+
+	//spreads every bit of a look over the whole long (MurmurHash3's finalizer),
+	//so looks that differ in a single bit don't cancel out in a band
+	private static long avalanche(long h)
+	{
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	///=========================================================================
+	///Sorts the commands back to front (insertion sort, in place)
+	///=========================================================================
+	public void sort()
+	{
+		long[] order = m_Order;
+
+		for (int i = 1; i < m_Count; ++i)
+		{
+			long o = order[i];
+			int j = i - 1;
+			while (j >= 0 && order[j] > o)
+			{
+				order[j + 1] = order[j];
+				--j;
+			}
+			order[j + 1] = o;
+		}
+	}
+
+	///=========================================================================
+	///Draws the sorted commands
+	///@param Graphics g	an awt.Graphics object to draw into
+	///@param int[] pixels	the pixels behind g (an int RGB image) or null;
+	///						commands that would rather draw into pixels do so
+	///@param int width		pixels per row
+	///=========================================================================
+	public void draw(Graphics g, int[] pixels, int width)
+	{
+		draw(g, pixels, width, 0, PolePosition.APP_HEIGHT);
+	}
+
+	///=========================================================================
+	///Same as above, only the commands covering the rows [top, bottom); g
+	///must be clipped to them
+	///=========================================================================
+	public void draw(Graphics g, int[] pixels, int width, int top, int bottom)
+	{
+		for (int i = 0; i < m_Count; ++i)
+		{
+			int c = (int) m_Order[i];
+			if (m_Y[c] >= bottom || m_Bottom[c] <= top)
+			{
+				continue;
+			}
+
+			long start = (m_Stats != null) ? System.nanoTime() : 0;
+
+			if (pixels != null && m_Raster[c])
+			{
+				m_Drawables[c].draw(pixels, width, top, bottom, m_Items[c]);
+			}
+			else
+			{
+				m_Drawables[c].draw(g, m_Items[c]);
+			}
+
+			if (m_Stats != null)
+			{
+				m_Stats.add(getStage(m_Drawables[c]), System.nanoTime() - start);
+			}
+		}
+	}
+
+	///=========================================================================
+	///Times every command drawn through Graphics (see above), adding it up
+	///by drawable
+	///@param FrameStats stats		where to add the times, null to stop
+	///@param Drawable[] timed		the drawables of the stages FrameStats.DRAW,
+	///								DRAW + 1...
+	///=========================================================================
+	public void setStats(FrameStats stats, Drawable[] timed)
+	{
+		m_Stats = stats;
+		m_Timed = timed;
+	}
+
+	///=========================================================================
+	///The stage a drawable is timed as
+	///=========================================================================
+	private int getStage(Drawable d)
+	{
+		int i = 0;
+		while (m_Timed[i] != d)
+		{
+			++i;
+		}
+
+		return FrameStats.DRAW + i;
+	}
+
+	///=========================================================================
+	///Draws the rows [top, bottom) of the sorted commands into int RGB pixels;
+	///commands that don't cover any of these rows are skipped
+	///@param int[] pixels	the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row to draw
+	///@param int bottom	first row not to draw
+	///=========================================================================
+	public void draw(int[] pixels, int width, int top, int bottom)
+	{
+		for (int i = 0; i < m_Count; ++i)
+		{
+			int c = (int) m_Order[i];
+
+			if (m_Y[c] < bottom && m_Bottom[c] > top)
+			{
+				m_Drawables[c].draw(pixels, width, top, bottom, m_Items[c]);
+			}
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		m_Order = new long[capacity];
+		m_Drawables = new Drawable[capacity];
+		m_Items = new int[capacity];
+		m_Y = new int[capacity];
+		m_Bottom = new int[capacity];
+		m_Raster = new boolean[capacity];
+		m_Looks = new long[capacity];
+	}
+
+	///=========================================================================
+	///Doubles the room for commands (only until it fits a whole frame)
+	///=========================================================================
+	private void grow()
+	{
+		long[] order = m_Order;
+		Drawable[] drawables = m_Drawables;
+		int[] items = m_Items;
+		int[] y = m_Y;
+		int[] bottom = m_Bottom;
+		boolean[] raster = m_Raster;
+		long[] looks = m_Looks;
+
+		allocate(2 * order.length);
+		System.arraycopy(order, 0, m_Order, 0, m_Count);
+		System.arraycopy(drawables, 0, m_Drawables, 0, m_Count);
+		System.arraycopy(items, 0, m_Items, 0, m_Count);
+		System.arraycopy(y, 0, m_Y, 0, m_Count);
+		System.arraycopy(bottom, 0, m_Bottom, 0, m_Count);
+		System.arraycopy(raster, 0, m_Raster, 0, m_Count);
+		System.arraycopy(looks, 0, m_Looks, 0, m_Count);
+	}
+}
@@ -7,62 +7,15 @@
 ///=============================================================================
 
 import java.awt.*;
+import java.util.Arrays;
 
-class Road 
+class Road implements Drawable 
 {
 	//scroll-deltas used when steering to animate the road
 	final public static int STEER_LEFT = 10;
 	final public static int STEER_RIGHT = -10;
-	final private int ROAD_LENGTH = 200;	//length of the road in Km
 	final private int BORDER_BASE = 20;		//road-border base width
 
-	///=========================================================================
-	///We define the road as a set of offsets
-	///each offset represents how far from the center line is the road.
-	///Positive offsets represent right-turns and negative offsets represent
-	///left-turns. 
-	///Later, we'll scale these offsets to draw curves; the scale will be a 
-	///function of the distance (in our case y-coordinate, as y approximates z)
-	///@TODO lacks physics: each element represents 10km in the circuit
-	///@TODO define an array of ROAD to have as many circuits as we want!
-	///=========================================================================
-	final private int[] ROAD = 
-	{
-		 0, -1, -2, -3, -4, -5, -6, -7, -8, -9,
-		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
-		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
-		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
-		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
-		-8, -7, -6, -5, -4, -3, -2, -1,  0,  1,
-		 2,  3,  4,  5,  4,  3,  2,  1,  2,  3,
-		 4,  5,  6,  7,  8,  9,  9,  9,  9,  9,
-		 9,  9,  9,  9,  9,  9,  9,  9,  8,  7,
-		 6,  5,  5,  4,  3,  2,  1,  0,  0,  0,
-		 0,  0,  0,  0,  0,  0,  0,  0,  0,  0,
-		 1,  1,  2,  2,  2,  2,  2,  2,  3,  3,
-		 0,  0,  0,  0,  0,  1,  2,  3,  4,  5,
-		 5,  5,  5,  5,  5,  6,  6,  6,  6,  6,
-		 5,  4,  3,  3,  3,  3,  3,  3,  3,  2,
-		 1,  0,  0,  0,  0,  0,  0,  0,  0,  0,
-		-1, -2, -3, -4, -5, -6, -7, -8, -9, -9,
-		-8, -7, -7, -7, -7, -7, -7, -7, -7, -7,
-		-6, -5, -5, -5, -5, -4, -3, -2, -1,  0,
-		 0,  0,  0,  0,  0,  0,  0,  0,  0,  0,
-	};
-	
-	///=========================================================================
-	///The scale to represent curves must be a function of distance as we stated
-	///above; so we use a basic quadratic function to compute this scale.
-	///The distance is clamped to [0,1] and squared; then we multiply this 
-	///by a scale constant which is computed as follows:
-	/// sc = (WIDTH/2) / MAX_ROAD_OFFSET
-	/// sc - Epsilon
-	///where MAX_ROAD_OFFSET is the maximum number in the road array and
-	///epsilon is a small amount we substract (1% of HEIGHT) in order to avoid
-	///having a curve that goes to the WIDTH of the canvas
-	///=========================================================================
-	final public static int CONST_S = (PolePosition.APP_WIDTH / 2) / 10 - (PolePosition.ROAD_HEIGHT / 100);
-	
 	///=========================================================================
 	///We substract a "delta" at each scan-line of the road; this is a trick
 	///to make the road appear smaller with the distance instead of having to 
@@ -75,220 +28,347 @@ class Road
 	/// np/2 - Epsilon				Finally, we substract a small amount in
 	///								order to have a "flat" road ending (i.e.
 	///								/ \  instead of /\)
+	///The constant is in 16.16 fixed point (see FixedPoint), in base units;
+	///at other resolutions the road is the base one scaled (see constructor).
 	///=========================================================================
-	final public static float CONST_Z = (PolePosition.APP_WIDTH / PolePosition.ROAD_HEIGHT) / 2.0f - 0.0f;
+	final public static int CONST_Z = ((PolePosition.BASE_WIDTH / PolePosition.BASE_ROAD_HEIGHT) << FixedPoint.FP_SHIFT) / 2;
+
+	final private static int STRIPE_LENGTH = 30;	//scan-lines per border color
+	final private static int ROAD_RGB = PolePosition.ROAD_COLOR.getRGB();
+	final private static int WHITE_RGB = Color.WHITE.getRGB();
+	final private static int RED_RGB = Color.RED.getRGB();
+
+	private Track m_Track;			//the circuit we draw
 
 	///=========================================================================
-	///HARD-CODED!
-	///TODO: make a class (i.e. addBanner(), removeBanner(), etc... fix this fucking shit!)
+	///Per-scanline lookup tables (index 0 is the bottom scanline). None of
+	///these depend on the game state, so they're computed only once instead
+	///of for every scanline of every frame.
 	///=========================================================================
-	//private Banner m_Banner;
-	private int[] m_Scale;			//predefined array of scales per scanline
-	private int m_BorderChange;		//used to animate the road
-	private int m_Offset = 0;		//to keep track of how much we've scrolled
-	private int m_Distance;			//player's position on the road
-	private Color m_BorderColor;	//color of the road-border
-	private Color m_DivisionColor;	//color of the road-division line
+	private int[] m_BaseLine;		//the scanline at the base resolution it shows
+	private int[] m_Inset;			//pixels the road shrinks at each side
+	private int[] m_BorderWidth;	//road-border (and half division line) width
+	private int[] m_CurveScale;		//curve scale (see Track.getScale), base pixels
+
+	//the frame submitted (see submit)
+	private GameState m_Prev;
+	private GameState m_Cur;
+	private float m_Alpha;
+
+	private boolean m_HalfScanlines;	//draw every other scanline, see setHalfScanlines
 
 	///=========================================================================
-	///Default constructor
+	///Constructor
+	///The tables are made for the current resolution: each scanline shows
+	///the base scanline at the same height, shrunk (or grown) to the width
+	///of the screen, so the road looks the same at any resolution.
+	///@param Track track	the circuit to draw
 	///=========================================================================
-	public Road() 
+	public Road(Track track) 
 	{
-		m_Scale = new int[PolePosition.ROAD_HEIGHT];
+		m_Track = track;
+		m_BaseLine = new int[PolePosition.ROAD_HEIGHT];
+		m_Inset = new int[PolePosition.ROAD_HEIGHT];
+		m_BorderWidth = new int[PolePosition.ROAD_HEIGHT];
+		m_CurveScale = new int[PolePosition.ROAD_HEIGHT];
+		m_HalfScanlines = false;
 
-		for (int i = 0; i < PolePosition.ROAD_HEIGHT; ++i) 
+		for (int j = 0; j < PolePosition.ROAD_HEIGHT; ++j) 
 		{
-			//clamp distance to [0,1]
-			float tmp = i * (1.0f / PolePosition.ROAD_HEIGHT);
+			int base = j * PolePosition.BASE_ROAD_HEIGHT / PolePosition.ROAD_HEIGHT;
+			m_BaseLine[j] = base;
+			m_Inset[j] = PolePosition.scaleX(FixedPoint.ToInt(FixedPoint.MulInt(CONST_Z, base + 1)));
+
+			//border width as a function of distance
+			m_BorderWidth[j] = (PolePosition.APP_WIDTH - 2 * m_Inset[j]) * BORDER_BASE / PolePosition.APP_WIDTH;
 
-			//scale as a function of distance
-			m_Scale[i] = (int) (java.lang.Math.pow(tmp, 3) * CONST_S);
+			m_CurveScale[j] = track.getScale(base);
 		}
 	}
 
 	///=========================================================================
-	///Sets the y-coord ad which the first border-color change will occur
-	///@param int borderChange	y-coord for the first color change
+	///The road scroll in between the previous and the current tick, on
+	///screen
 	///=========================================================================
-	public void setBorderChange(int borderChange) 
+	private static int getScroll(GameState prev, GameState cur, float alpha) 
 	{
-		m_BorderChange = borderChange;
+		return PolePosition.scaleX(prev.scroll + (int) ((cur.scroll - prev.scroll) * alpha));
 	}
 
 	///=========================================================================
-	///getBorderChange()
-	///@return	the y-coordinate at which the first border-color change occurs
+	///The curve under the player in between the previous and the current
+	///tick, 16.16 (see Track.getCurve)
 	///=========================================================================
-	public int getBorderChange() 
+	private int getCurve(GameState prev, GameState cur, float alpha) 
 	{
-		return m_BorderChange;
+		return m_Track.getCurve(m_Track.interpolate(prev.distance, cur.distance, alpha));
 	}
 
 	///=========================================================================
-	///Sets the road-border color
-	///@param Color borderColor	the color of the border
+	///How far a curve moves a scanline sideways, on screen
+	///@param int delta		the curve, 16.16 (see getCurve)
+	///@param int j			scanline (0 is the bottom one)
 	///=========================================================================
-	public void setBorderColor(Color borderColor) 
+	private int getCurveShift(int delta, int j) 
 	{
-		m_BorderColor = borderColor;
+		return PolePosition.scaleX(FixedPoint.ToInt(delta * m_CurveScale[j]));
 	}
 
 	///=========================================================================
-	///getBorderColor
-	///@return the road-border color
-	///=========================================================================	
-	public Color getBorderColor() 
+	///getWidth
+	///@param int j		scanline (0 is the bottom one)
+	///@return the width of the road at the scanline
+	///=========================================================================
+	public int getWidth(int j) 
 	{
-		return m_BorderColor;
+		return PolePosition.APP_WIDTH - 2 * m_Inset[j];
 	}
 
 	///=========================================================================
-	///Sets the road-division color
-	///@param Color divisionColor the color of the border
+	///getCenter
+	///@param int j				scanline (0 is the bottom one)
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 for the previous tick, 1 for the current one
+	///@return the x-coord of the road center at the scanline, in between the
+	///		   previous and the current tick
 	///=========================================================================
-	public void setDivisionColor(Color divisionColor) 
+	public int getCenter(int j, GameState prev, GameState cur, float alpha) 
 	{
-		m_DivisionColor = divisionColor;
+		return PolePosition.APP_WIDTH / 2 + getScroll(prev, cur, alpha) + getCurveShift(getCurve(prev, cur, alpha), j);
 	}
 
 	///=========================================================================
-	///getDivisionColor
-	///@return the road-division color
-	///=========================================================================	
-	public Color getDivisionColor() 
+	///The border change in between the previous and the current tick
+	///=========================================================================
+	private static int getBorderChange(GameState prev, GameState cur, float alpha) 
 	{
-		return m_DivisionColor;
+		//the border change only moves down; when it went up it wrapped around
+		//and the colors were swapped, so there is nothing to interpolate
+		if (cur.borderChange > prev.borderChange) 
+		{
+			return cur.borderChange;
+		}
+
+		return prev.borderChange + (int) ((cur.borderChange - prev.borderChange) * alpha);
 	}
 
 	///=========================================================================
-	///getOffset
-	///@return the road-offset according to the player's position on the road
+	///Whether a scanline shows the starting border color or the other one.
+	///The first color change happens 30 scan-lines after the border change
+	///and from there on the color changes every 30 scan-lines; so every
+	///scanline can be told on its own, without walking the ones below.
+	///@param int j				scanline (0 is the bottom one)
+	///@param int borderChange	y-coord of the first border-color change
+	///@param boolean swapped	the starting colors are swapped (GameState)
+	///@return true for RED borders & no division line, false for WHITE ones
 	///=========================================================================
-	public int getOffset() 
+	static boolean isRedStripe(int j, int borderChange, boolean swapped) 
 	{
-		return ROAD[m_Distance];
+		boolean changed = j >= borderChange && (((j - borderChange + 1) / STRIPE_LENGTH) & 1) == 1;
+		return changed != swapped;
 	}
-	
+
 	///=========================================================================
-	///getScale
-	///@param int scanline number
-	///@return the road-scale of given scanline
+	///Draws every other scanline of the road only, each twice as high (see
+	///QualityGovernor): the road is half as sharp and half the work
+	///@param boolean half	true to draw half the scanlines
 	///=========================================================================
-	public int getScale(int scanLine) 
+	public void setHalfScanlines(boolean half) 
 	{
-		return m_Scale[scanLine];
+		m_HalfScanlines = half;
 	}
 
 	///=========================================================================
-	///Sets the current player's position on the road
-	///@param float distance	desired distance in km
-	///=========================================================================
-	public void setDistance(int distance) 
+	///Draws the road in between the previous and the current tick.
+	///Instead of 5 color changes and lines per scanline we draw in passes,
+	///one per color: the road, then the white and red stripes. The
+	///division line is drawn only when white, since otherwise it has the
+	///color of the road underneath.
+	///@param Graphics g		an awt.graphics object to draw into
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	public void draw(Graphics g, GameState prev, GameState cur, float alpha) 
 	{
-		//check if we have completed the circuit
-		if (distance >= ROAD_LENGTH) 
+		int delta = getCurve(prev, cur, alpha);
+		int offset = getScroll(prev, cur, alpha);
+		int borderChange = getBorderChange(prev, cur, alpha);
+		int center = PolePosition.APP_WIDTH / 2 + offset;
+		int step = m_HalfScanlines ? 2 : 1;
+
+		g.setColor(PolePosition.ROAD_COLOR);
+		for (int i = PolePosition.APP_HEIGHT - 1, j = 0; j < PolePosition.ROAD_HEIGHT; i -= step, j += step) 
 		{
-			distance = 0;
+			int deltaS = getCurveShift(delta, j);
+			drawLine(g, m_Inset[j] + deltaS + offset, PolePosition.APP_WIDTH + deltaS + offset - m_Inset[j], i, j, step);
 		}
 
-		m_Distance = distance;
+		for (int pass = 0; pass < 2; ++pass) 
+		{
+			boolean red = (pass == 1);
+			g.setColor(red ? Color.RED : Color.WHITE);
+
+			for (int i = PolePosition.APP_HEIGHT - 1, j = 0; j < PolePosition.ROAD_HEIGHT; i -= step, j += step) 
+			{
+				if (isRedStripe(m_BaseLine[j], borderChange, cur.borderSwapped) != red) 
+				{
+					continue;
+				}
+
+				int deltaS = getCurveShift(delta, j);
+				int borderWidth = m_BorderWidth[j];
+				int lineStart = m_Inset[j] + deltaS + offset;
+				int lineEnd = PolePosition.APP_WIDTH + deltaS + offset - m_Inset[j];
+
+				drawLine(g, lineStart, lineStart + borderWidth, i, j, step);
+				drawLine(g, lineEnd, lineEnd + borderWidth, i, j, step);
+
+				//draw division lines
+				if (!red) 
+				{
+					drawLine(g, center + deltaS - borderWidth, center + deltaS + borderWidth, i, j, step);
+				}
+			}
+		}
 	}
 
 	///=========================================================================
-	///getDistance
-	///@return current player's position on the road in km
+	///Draws [from, to] of the scanline i (the j-th from the bottom) and of
+	///the ones above it that it stands for, step in all
 	///=========================================================================
-	public int getDistance() 
+	private static void drawLine(Graphics g, int from, int to, int i, int j, int step) 
 	{
-		return m_Distance;
+		int rows = Math.min(step, PolePosition.ROAD_HEIGHT - j);
+		if (rows == 1) 
+		{
+			g.drawLine(from, i, to, i);
+		}
+		else 
+		{
+			g.fillRect(Math.min(from, to), i - rows + 1, Math.abs(to - from) + 1, rows);
+		}
 	}
 
 	///=========================================================================
-	///scrolls the road in curves
-	///@param int delta		amount in pixels to scroll
-	///=========================================================================	
-	public void setScroll(int delta) 
+	///Submits the road in between the previous and the current tick; it
+	///would rather be drawn into pixels, which is a lot faster than drawLine
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha) 
 	{
-		m_Offset += delta;
+		m_Prev = prev;
+		m_Cur = cur;
+		m_Alpha = alpha;
 
-		//Do not scroll more than half-road width!
-		if (m_Offset < -PolePosition.APP_WIDTH / 2) 
-		{
-			m_Offset = -PolePosition.APP_WIDTH / 2;
-		}
+		//the road looks the same as long as its curve, scroll and stripes
+		//do, and as long as it's drawn as sharp
+		long look = (m_HalfScanlines ? 1L << 62 : 0) | (long) (getCurve(prev, cur, alpha) & 0x3FFFFF) << 40 | (long) (getScroll(prev, cur, alpha) & 0xFFFFFF) << 16
+			| (long) getBorderChange(prev, cur, alpha) << 1 | (cur.borderSwapped ? 1 : 0);
+		queue.submit(this, 0, RenderQueue.key(RenderQueue.LAYER_ROAD, 0), 0, PolePosition.SKY_HEIGHT, PolePosition.APP_WIDTH, PolePosition.ROAD_HEIGHT, look, true);
+	}
 
-		if (m_Offset > PolePosition.APP_WIDTH / 2) 
-		{
-			m_Offset = PolePosition.APP_WIDTH / 2;
-		}
+	///=========================================================================
+	///Draws the road submitted
+	///@param Graphics g	an awt.graphics object to draw into
+	///@param int item		unused (the road is a single item)
+	///=========================================================================
+	public void draw(Graphics g, int item) 
+	{
+		draw(g, m_Prev, m_Cur, m_Alpha);
 	}
 
 	///=========================================================================
-	///getScroll()
-	///@return	the amount of pixels (offset) the road has been scrolled
+	///Draws the rows [top, bottom) of the road submitted into int RGB pixels
 	///=========================================================================
-	public int getScroll() 
+	public void draw(int[] pixels, int width, int top, int bottom, int item) 
 	{
-		return m_Offset;
+		draw(pixels, width, top, bottom, m_Prev, m_Cur, m_Alpha);
 	}
 
 	///=========================================================================
-	///Draws the road
-	///@param Graphics g an awt.graphics object to draw into
+	///Draws the road in between the previous and the current tick straight
+	///into the pixels of an int-packed RGB image (e.g. the DataBufferInt of a
+	///TYPE_INT_RGB BufferedImage): a handful of array fills per scanline and
+	///no Graphics calls at all.
+	///@param int[] pixels		the pixels to draw into (APP_HEIGHT rows)
+	///@param int width			pixels per row
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	public void draw(int[] pixels, int width, GameState prev, GameState cur, float alpha) 
+	{
+		draw(pixels, width, 0, PolePosition.APP_HEIGHT, prev, cur, alpha);
+	}
+
 	///=========================================================================
-	public void draw(Graphics g) 
+	///Same as above, but only the rows in [top, bottom); every scanline of
+	///the road can be drawn on its own, so bands of the screen can be drawn
+	///by different threads
+	///=========================================================================
+	public void draw(int[] pixels, int width, int top, int bottom, GameState prev, GameState cur, float alpha) 
 	{
-		float deltaZ = 0.0f;
-		int deltaS = 0;
-		int delta = ROAD[m_Distance];
-		int lineStart = 0;
-		int lineEnd = 0;
-		int borderWidth = 0;
-		int b = 0;
-		boolean startCount = false;
-
-		for (int i = PolePosition.APP_HEIGHT - 1, j = 0; i >= PolePosition.SKY_HEIGHT; --i, ++j) 
+		int delta = getCurve(prev, cur, alpha);
+		int offset = getScroll(prev, cur, alpha);
+		int borderChange = getBorderChange(prev, cur, alpha);
+		int center = PolePosition.APP_WIDTH / 2 + offset;
+		int first = Math.max(top, PolePosition.SKY_HEIGHT);
+		int last = Math.min(bottom, PolePosition.APP_HEIGHT) - 1;
+
+		for (int i = last, j = PolePosition.APP_HEIGHT - 1 - last; i >= first; --i, ++j) 
 		{
-			//the first borderChange will be changing from 30 down to 0 all the time
-			if (j == m_BorderChange) 
-			{
-				startCount = true;
-			}
+			int row = i * width;
 
-			if (startCount) 
+			//at half the scanlines every other one is a copy of the one
+			//below it, unless that one is another band's to draw
+			if (m_HalfScanlines && (j & 1) != 0 && i < last) 
 			{
-				b++;
+				System.arraycopy(pixels, row + width, pixels, row, width);
+				continue;
 			}
 
-			deltaZ += CONST_Z;
-			deltaS = delta * m_Scale[j];
-			lineStart = (int) deltaZ + deltaS + m_Offset;
-			lineEnd = PolePosition.APP_WIDTH + deltaS + m_Offset - (int) deltaZ;
+			int deltaS = getCurveShift(delta, j);
+			int borderWidth = m_BorderWidth[j];
+			int lineStart = m_Inset[j] + deltaS + offset;
+			int lineEnd = PolePosition.APP_WIDTH + deltaS + offset - m_Inset[j];
+			boolean red = isRedStripe(m_BaseLine[j], borderChange, cur.borderSwapped);
 
-			g.setColor(PolePosition.ROAD_COLOR);
-			g.drawLine(lineStart, i, lineEnd, i);
+			fillSpan(pixels, row, width, lineStart, lineEnd, ROAD_RGB);
+			fillSpan(pixels, row, width, lineStart, lineStart + borderWidth, red ? RED_RGB : WHITE_RGB);
+			fillSpan(pixels, row, width, lineEnd, lineEnd + borderWidth, red ? RED_RGB : WHITE_RGB);
 
-			//as soon as we get a border color change, we continue changing color every 30 scan-lines
-			if (b == 30) 
+			//the division line is only visible when white
+			if (!red) 
 			{
-				b = 0;
-				m_BorderColor = (m_BorderColor == Color.WHITE ? Color.RED : Color.WHITE);
-				m_DivisionColor = (m_DivisionColor == Color.WHITE ? PolePosition.ROAD_COLOR : Color.WHITE);
+				fillSpan(pixels, row, width, center + deltaS - borderWidth, center + deltaS + borderWidth, WHITE_RGB);
 			}
+		}
+	}
+
+	///=========================================================================
+	///Fills the pixels [from, to] (both included, like drawLine) of a row,
+	///clipped to the row
+	///=========================================================================
+	private static void fillSpan(int[] pixels, int row, int width, int from, int to, int rgb) 
+	{
+		if (from < 0) 
+		{
+			from = 0;
+		}
 
-			//compute new border width as a function of distance
-			borderWidth = (PolePosition.APP_WIDTH - 2 * (int) deltaZ) * BORDER_BASE / PolePosition.APP_WIDTH;
-			g.setColor(m_BorderColor);
-			g.drawLine(lineStart, i, lineStart + borderWidth, i);
-			g.drawLine(lineEnd, i, lineEnd + borderWidth, i);
-
-			//draw division lines
-			lineStart = PolePosition.APP_WIDTH / 2 + deltaS + m_Offset - borderWidth;
-			lineEnd = PolePosition.APP_WIDTH / 2 + deltaS + m_Offset + borderWidth;
-			g.setColor(m_DivisionColor);
-			g.drawLine(lineStart, i, lineEnd, i);
+		if (to > width - 1) 
+		{
+			to = width - 1;
+		}
+
+		if (from <= to) 
+		{
+			Arrays.fill(pixels, row + from, row + to + 1, rgb);
 		}
 	}
 }
-
@@ -0,0 +1,220 @@
+///=============================================================================
+///@file    Roadside.java
+///@brief   The objects standing by the road (banners, signs, trees).
+///=============================================================================
+
+///=============================================================================
+///Where the objects stand is a function of the circuit alone: each segment is
+///looked at once, as it comes into view, and whatever stands on it is placed
+///then (see place). A circuit of millions of segments costs no more than the
+///built-in one, and every lap looks the same.
+///
+///The objects in view are kept in a ring of fixed size, nearest first: the
+///segments come into view in order, so the objects are appended in order of
+///distance and the ring stays sorted without ever sorting it. Objects the
+///player has passed are dropped from the front and their slots reused by the
+///ones coming in at the back, so once the ring is set up moving along the
+///track allocates nothing, and only the objects in view are ever looked at.
+///
+///Distances are absolute, in 32.32 km: laps * length + distance, so they only
+///grow, even past the start line. Like Simulation this class has no AWT
+///dependency; Scenery draws the objects.
+///=============================================================================
+class Roadside
+{
+	//kinds of objects (the frames of Scenery)
+	final public static int TREE = 1;
+	final public static int SIGN_LEFT = 2;		//a left turn ahead
+	final public static int SIGN_RIGHT = 3;		//a right turn ahead
+	final public static int BANNER1 = 4;
+	final public static int BANNER2 = 5;
+	final public static int KINDS = 5;
+
+	final public static long VIEW_DISTANCE = Opponents.VIEW_DISTANCE;	//objects come into view this far ahead
+	final public static long BEHIND = FixedPoint.FP_LONG_ONE;			//and stay until this far behind (off screen)
+	final public static int CAPACITY = 256;		//objects in view at most (a power of 2)
+
+	final private static int MASK = CAPACITY - 1;
+	final private static int BANNER_PERIOD = 100;	//km between banners
+	final private static int BANNER_AT = 55;		//where they stand in every period
+	final private static int SIGN_LEAD = 3;			//km before a turn its sign stands
+	final private static int EDGE = PolePosition.BASE_WIDTH / 2 + 10;	//off center of what stands by the road
+	final private static int TREE_EDGE = EDGE + 50;		//off center of the nearest trees
+	final private static int TREE_SPREAD = 160;			//how much farther trees may stand
+
+	private Track m_Track;
+	private int m_Length;		//of the circuit, km
+
+	//the ring, sorted by distance from its head
+	private long[] m_Distance;	//absolute, 32.32 km
+	private int[] m_Kind;
+	private int[] m_Lane;		//base pixels off the road center (bottom scanline); < 0 on the left
+	private int m_Head;			//slot of the nearest object
+	private int m_Count;		//objects in the ring
+
+	private long m_Next;		//next segment to place, absolute
+	private long m_Player;		//where the player was at the last update
+
+	///=========================================================================
+	///Constructor
+	///@param Track track	the circuit the objects stand by
+	///=========================================================================
+	public Roadside(Track track)
+	{
+		m_Track = track;
+		m_Length = track.getLength();
+		m_Distance = new long[CAPACITY];
+		m_Kind = new int[CAPACITY];
+		m_Lane = new int[CAPACITY];
+		reset(0);
+	}
+
+	///=========================================================================
+	///@param GameState s	a state
+	///@return the player's absolute distance in it (32.32 km)
+	///=========================================================================
+	public long getPosition(GameState s)
+	{
+		return ((long) s.laps * m_Length << FixedPoint.FP_LONG_SHIFT) + s.distance;
+	}
+
+	///=========================================================================
+	///Empties the ring and starts placing objects from a position on
+	///=========================================================================
+	private void reset(long player)
+	{
+		m_Head = 0;
+		m_Count = 0;
+		m_Next = (player - BEHIND) >> FixedPoint.FP_LONG_SHIFT;
+		m_Player = player;
+	}
+
+	///=========================================================================
+	///Drops the objects the player has passed and places the ones coming
+	///into view
+	///@param long player	the player's absolute distance (32.32 km); going
+	///						back or jumping far ahead (a new race) starts over
+	///=========================================================================
+	public void update(long player)
+	{
+		if (player < m_Player || player - m_Player > VIEW_DISTANCE)
+		{
+			reset(player);
+		}
+		m_Player = player;
+
+		while (m_Count > 0 && m_Distance[m_Head] < player - BEHIND)
+		{
+			m_Head = (m_Head + 1) & MASK;
+			--m_Count;
+		}
+
+		long end = player + VIEW_DISTANCE;
+		while ((m_Next << FixedPoint.FP_LONG_SHIFT) <= end)
+		{
+			place(m_Next);
+			++m_Next;
+		}
+	}
+
+	///=========================================================================
+	///Places what stands on a segment, in order of distance: a banner every
+	///BANNER_PERIOD km, a sign SIGN_LEAD km before a turn (on its outside)
+	///and a tree on one side or the other of every km
+	///@param long segment	absolute segment number
+	///=========================================================================
+	private void place(long segment)
+	{
+		int s = (int) (segment % m_Length);
+		if (s < 0)
+		{
+			s += m_Length;
+		}
+		long start = segment << FixedPoint.FP_LONG_SHIFT;
+		long h = hash(s);
+
+		if (s % BANNER_PERIOD == BANNER_AT)
+		{
+			add(start, BANNER1 + (int) (h & 1), ((h & 2) == 0) ? -EDGE : EDGE);
+		}
+		else
+		{
+			int turn = m_Track.getOffset(s, SIGN_LEAD);
+			if (turn != 0 && m_Track.getOffset(s, SIGN_LEAD - 1) == 0)
+			{
+				add(start, (turn < 0) ? SIGN_LEFT : SIGN_RIGHT, (turn < 0) ? EDGE : -EDGE);
+			}
+		}
+
+		//somewhere in the first half of the km, past the banner or sign
+		long at = start + 1 + ((h >>> 32) & (FixedPoint.FP_LONG_ONE / 2 - 1));
+		int lane = TREE_EDGE + (int) ((h >>> 8) & 0xFFFF) % TREE_SPREAD;
+		add(at, TREE, ((h & 4) == 0) ? -lane : lane);
+	}
+
+	///=========================================================================
+	///Appends an object to the ring; with no room left (it's sized for the
+	///densest stretch of road in view, so it never happens) it is dropped
+	///=========================================================================
+	private void add(long distance, int kind, int lane)
+	{
+		if (m_Count == CAPACITY)
+		{
+			return;
+		}
+
+		int slot = (m_Head + m_Count) & MASK;
+		m_Distance[slot] = distance;
+		m_Kind[slot] = kind;
+		m_Lane[slot] = lane;
+		++m_Count;
+	}
+
+	///=========================================================================
+	///A well mixed hash of a segment (the SplitMix64 finalizer), so what
+	///stands on it looks random but is the same on every lap
+	///=========================================================================
+	private static long hash(int segment)
+	{
+		long h = (segment + 1L) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	///=========================================================================
+	///@return the objects in view, see update
+	///=========================================================================
+	public int getCount()
+	{
+		return m_Count;
+	}
+
+	///=========================================================================
+	///@param int i		an object in view, 0 being the nearest
+	///@return its absolute distance (32.32 km)
+	///=========================================================================
+	public long getDistance(int i)
+	{
+		return m_Distance[(m_Head + i) & MASK];
+	}
+
+	///=========================================================================
+	///@param int i		an object in view, 0 being the nearest
+	///@return what it is (TREE, SIGN_LEFT...)
+	///=========================================================================
+	public int getKind(int i)
+	{
+		return m_Kind[(m_Head + i) & MASK];
+	}
+
+	///=========================================================================
+	///@param int i		an object in view, 0 being the nearest
+	///@return base pixels off the road center (at the bottom scanline) of
+	///		   its edge nearest to the road; < 0 on the left side
+	///=========================================================================
+	public int getLane(int i)
+	{
+		return m_Lane[(m_Head + i) & MASK];
+	}
+}
@@ -0,0 +1,166 @@
+///=============================================================================
+///@file    ScaledImageSet.java
+///@brief   An image pre-scaled to a range of sizes.
+///=============================================================================
+
+import java.awt.*;
+import java.awt.image.*;
+
+///=============================================================================
+///Sprites that grow as they come closer (the banners) used to be rescaled by
+///drawImage on every frame. Instead we scale the image once, when it's
+///loaded, to every size it will be drawn at: from minPercent to maxPercent of
+///its size in steps of stepPercent. Each frame then picks the closest one and
+///draws it unscaled. Since the work is done only once we can afford good
+///filtering: bilinear from the closest of a chain of halvings (see halve()).
+///=============================================================================
+class ScaledImageSet
+{
+	private int m_MinPercent;
+	private int m_StepPercent;
+	private BufferedImage[] m_Images;	//screen-compatible, one per step
+	private int[][] m_Pixels;			//their ARGB pixels (software rendering)
+
+	///=========================================================================
+	///Constructor
+	///@param Image src			the image at 100%
+	///@param int minPercent	smallest size
+	///@param int maxPercent	largest size
+	///@param int stepPercent	size difference between two versions
+	///=========================================================================
+	public ScaledImageSet(Image src, int minPercent, int maxPercent, int stepPercent)
+	{
+		int srcW = src.getWidth(null);
+		int srcH = src.getHeight(null);
+		int count = (maxPercent - minPercent) / stepPercent + 1;
+		BufferedImage[] halves = halve(src, srcW, srcH, Math.max(minPercent, 1));
+
+		m_MinPercent = minPercent;
+		m_StepPercent = stepPercent;
+		m_Images = new BufferedImage[count];
+		m_Pixels = new int[count][];
+
+		for (int i = 0; i < count; ++i)
+		{
+			int percent = minPercent + i * stepPercent;
+			int w = Math.max(srcW * percent / 100, 1);
+			int h = Math.max(srcH * percent / 100, 1);
+
+			//the smallest halving still at least as large as the version
+			int k = 0;
+			while (k + 1 < halves.length && halves[k + 1].getWidth() >= w && halves[k + 1].getHeight() >= h)
+			{
+				++k;
+			}
+
+			BufferedImage scaled = scale(halves[k], w, h);
+			m_Pixels[i] = scaled.getRGB(0, 0, w, h, null, 0, w);
+			m_Images[i] = ImageCache.toCompatible(scaled, m_Pixels[i]);
+		}
+	}
+
+	///=========================================================================
+	///@param int percent	the size we want to draw
+	///@return the index of the closest version we have
+	///=========================================================================
+	private int getIndex(int percent)
+	{
+		int i = (percent - m_MinPercent + m_StepPercent / 2) / m_StepPercent;
+		return Math.max(0, Math.min(i, m_Images.length - 1));
+	}
+
+	///=========================================================================
+	///@param int percent	the size we want to draw
+	///@return the closest version of the image
+	///=========================================================================
+	public BufferedImage getImage(int percent)
+	{
+		return m_Images[getIndex(percent)];
+	}
+
+	///=========================================================================
+	///@param int percent	the size we want to draw
+	///@return the ARGB pixels of the closest version, row by row
+	///=========================================================================
+	public int[] getPixels(int percent)
+	{
+		return m_Pixels[getIndex(percent)];
+	}
+
+	///=========================================================================
+	///@param int percent	the size we want to draw
+	///@return the width of the closest version
+	///=========================================================================
+	public int getWidth(int percent)
+	{
+		return m_Images[getIndex(percent)].getWidth();
+	}
+
+	///=========================================================================
+	///@param int percent	the size we want to draw
+	///@return the height of the closest version
+	///=========================================================================
+	public int getHeight(int percent)
+	{
+		return m_Images[getIndex(percent)].getHeight();
+	}
+
+	///=========================================================================
+	///Bilinear filtering only looks at the 2x2 source pixels around each
+	///destination pixel, so shrinking by more than half in one go would skip
+	///source pixels (and shimmer). We build the chain 100%, 50%, 25%... down to
+	///minPercent once; every version is then scaled from the closest image of
+	///the chain, which is never more than twice its size.
+	///@return the chain, largest first
+	///=========================================================================
+	private static BufferedImage[] halve(Image src, int srcW, int srcH, int minPercent)
+	{
+		int count = 1;
+		for (int percent = 100; percent / 2 >= minPercent && (srcW >> count) > 0 && (srcH >> count) > 0; percent /= 2)
+		{
+			++count;
+		}
+
+		BufferedImage[] halves = new BufferedImage[count];
+		halves[0] = scale(src, srcW, srcH);
+		for (int i = 1; i < count; ++i)
+		{
+			halves[i] = scale(halves[i - 1], srcW >> i, srcH >> i);
+		}
+
+		return halves;
+	}
+
+	///=========================================================================
+	///Scales an image to any size, as well as the versions of a set are
+	///@param Image src		the image
+	///@param int w, h		the size we want
+	///@return the scaled image
+	///=========================================================================
+	static BufferedImage resize(Image src, int w, int h)
+	{
+		BufferedImage image = scale(src, src.getWidth(null), src.getHeight(null));
+		while (image.getWidth() / 2 >= w && image.getHeight() / 2 >= h)
+		{
+			image = scale(image, image.getWidth() / 2, image.getHeight() / 2);
+		}
+
+		return scale(image, w, h);
+	}
+
+	///=========================================================================
+	///Scales an image with bilinear filtering. Premultiplied alpha keeps the
+	///colors of transparent pixels from bleeding into the edges.
+	///=========================================================================
+	private static BufferedImage scale(Image src, int w, int h)
+	{
+		BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = dst.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(src, 0, 0, w, h, null);
+		g.dispose();
+
+		return dst;
+	}
+}
@@ -0,0 +1,152 @@
+///=============================================================================
+///@file    Scenery.java
+///@brief   Draws the objects standing by the road.
+///=============================================================================
+
+import java.awt.*;
+
+///=============================================================================
+///Roadside knows what stands where; this class keeps it up to date with the
+///player and draws the objects in view the way Opponents draws the cars: on
+///the scanline of their distance, scaled to the width of the road there and
+///pre-scaled like the cars. Every frame costs what is in view, whatever the
+///number of objects on the circuit.
+///=============================================================================
+class Scenery extends Sprite
+{
+	final public static int MAX_SCALE = 180;	//% of an object at the bottom scanline
+	final private static int MIN_SCALE = 2;
+	final private static int SCALE_STEP = 2;
+	final public static int FAR_SCALE = 60;		//objects below are the far half in view (see setMinScale)
+
+	private Road m_Road;
+	private Roadside m_Roadside;
+	private ScaledImageSet[] m_Scaled;	//every size of every kind (by frame)
+	private int m_MinScale;				//objects smaller are left out
+
+	//the objects in view this frame, farthest first (see submit)
+	private int m_Count;
+	private int[] m_X;
+	private int[] m_Y;
+	private int[] m_Kind;
+	private int[] m_Scale;
+
+	///=========================================================================
+	///Constructor
+	///@param Track track	the circuit the objects stand by
+	///@param Road road		the road they stand by
+	///=========================================================================
+	public Scenery(Track track, Road road)
+	{
+		super(Roadside.KINDS);
+		m_Road = road;
+		m_Roadside = new Roadside(track);
+		m_Scaled = new ScaledImageSet[Roadside.KINDS + 1];
+		m_MinScale = 0;
+
+		m_Count = 0;
+		m_X = new int[Roadside.CAPACITY];
+		m_Y = new int[Roadside.CAPACITY];
+		m_Kind = new int[Roadside.CAPACITY];
+		m_Scale = new int[Roadside.CAPACITY];
+	}
+
+	///=========================================================================
+	///addFrame()
+	///adds the image of a kind of object along with all of its scaled versions
+	///@param int frameNum the kind (Roadside.TREE...)
+	///@param String path the absolute path to the image
+	///=========================================================================
+	@Override
+	public void addFrame(int frameNum, String path)
+	{
+		super.addFrame(frameNum, path);
+		m_Scaled[frameNum] = ImageCache.getScaledSet(path, MIN_SCALE, MAX_SCALE, SCALE_STEP);
+	}
+
+	///=========================================================================
+	///Leaves the objects smaller than a scale out of the frames: the far ones
+	///are most of those in view, and each costs a blit like a near one (see
+	///QualityGovernor)
+	///@param int scale		% of an object at the bottom scanline (FAR_SCALE
+	///						leaves the far ones out), 0 draws them all
+	///=========================================================================
+	public void setMinScale(int scale)
+	{
+		m_MinScale = scale;
+	}
+
+	///=========================================================================
+	///Works out where the objects in view are and how large, in between the
+	///previous and the current tick, and submits them farthest first
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	@Override
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha)
+	{
+		long from = m_Roadside.getPosition(prev);
+		long player = from + (long) ((m_Roadside.getPosition(cur) - from) * (double) alpha);
+		m_Roadside.update(player);
+
+		m_Count = 0;
+		for (int i = m_Roadside.getCount() - 1; i >= 0; --i)
+		{
+			long ahead = m_Roadside.getDistance(i) - player;
+			if (ahead > Roadside.VIEW_DISTANCE)
+			{
+				continue;
+			}
+
+			//below the screen the road keeps the width of the bottom scanline
+			int j = Opponents.getBaseLine(ahead) * PolePosition.ROAD_HEIGHT / PolePosition.BASE_ROAD_HEIGHT;
+			int row = Math.max(j, 0);
+			int width = m_Road.getWidth(row);
+			int lane = m_Roadside.getLane(i);
+			int x = m_Road.getCenter(row, prev, cur, alpha) + lane * width / PolePosition.BASE_WIDTH;
+
+			int kind = m_Roadside.getKind(i);
+			ScaledImageSet set = m_Scaled[kind];
+			int scale = width * MAX_SCALE / PolePosition.APP_WIDTH;
+			if (scale < m_MinScale)
+			{
+				continue;
+			}
+
+			int w = set.getWidth(scale);
+			int h = set.getHeight(scale);
+
+			int k = m_Count++;
+			m_X[k] = (lane < 0) ? x - w : x;
+			m_Y[k] = PolePosition.APP_HEIGHT - j - h;
+			m_Kind[k] = kind;
+			m_Scale[k] = scale;
+			queue.submit(this, k, RenderQueue.key(RenderQueue.LAYER_OBJECTS, j), m_X[k], m_Y[k], w, h, (long) kind << 32 | scale, false);
+		}
+	}
+
+	///=========================================================================
+	///draws an object submitted
+	///@param Graphics g	a awt.Graphics object to draw into
+	///@param int item		the object
+	///=========================================================================
+	@Override
+	public void draw(Graphics g, int item)
+	{
+		g.drawImage(m_Scaled[m_Kind[item]].getImage(m_Scale[item]), m_X[item], m_Y[item], null);
+	}
+
+	///=========================================================================
+	///draws the rows [top, bottom) of an object submitted straight into int
+	///RGB pixels
+	///=========================================================================
+	@Override
+	public void draw(int[] pixels, int width, int top, int bottom, int item)
+	{
+		ScaledImageSet set = m_Scaled[m_Kind[item]];
+		int scale = m_Scale[item];
+		Raster.blit(pixels, width, top, bottom, set.getPixels(scale), set.getWidth(scale), set.getHeight(scale), m_X[item], m_Y[item]);
+	}
+}
@@ -0,0 +1,221 @@
+///=============================================================================
+///@file    Settings.java
+///@brief   Start-up options of the game (from the command line).
+///=============================================================================
+
+class Settings
+{
+	final public static int DEFAULT_TICK_RATE = Simulation.BASE_TICK_RATE;	//ticks per second
+	final public static int DEFAULT_FRAME_RATE = 60;	//rendered frames per second
+	final public static int DEFAULT_OPPONENTS = 20;		//opponent cars
+	final public static int DEFAULT_STATS_PERIOD = 10;	//seconds between rows of the timings file
+	final public static int MIN_WIDTH = 160;			//smallest resolution
+	final public static int MIN_HEIGHT = 120;
+
+	//draw frames straight from the game loop through a BufferStrategy;
+	//false uses the passive repaint()/paint() path ("-passive")
+	boolean activeRendering = true;
+
+	//compose frames in software, in parallel bands ("-software")
+	boolean softwareRendering = false;
+
+	//window size ("-resolution <w>x<h>")
+	int width = PolePosition.BASE_WIDTH;
+	int height = PolePosition.BASE_HEIGHT;
+
+	//size the frames are drawn at before they are blown up to the window,
+	//0 for the window's ("-render <w>x<h>"); "-performance" draws them at
+	//half the window's size, for machines that can't keep up otherwise
+	int renderWidth = 0;
+	int renderHeight = 0;
+	boolean performance = false;
+
+	//simulation ticks per second ("-tickrate <hz>")
+	int tickRate = DEFAULT_TICK_RATE;
+
+	//frames per second, 0 means uncapped ("-fps <hz>")
+	int frameRate = DEFAULT_FRAME_RATE;
+
+	//track file to drive (see Track), null for the built-in circuit
+	//("-track <file>")
+	String trackFile = null;
+
+	//number of opponent cars ("-opponents <n>")
+	int opponents = DEFAULT_OPPONENTS;
+
+	//CSV file the frame timings are written to, null for none
+	//("-stats <file>"), and how often ("-statsperiod <seconds>")
+	String statsFile = null;
+	int statsPeriod = DEFAULT_STATS_PERIOD;
+
+	//log the input of every tick is recorded to (see InputRecorder), null
+	//for none ("-record <file>")
+	String recordFile = null;
+
+	//log of a race to replay instead of playing, null for none; the log
+	//says which circuit, opponents and tick rate ("-replay <file>")
+	String replayFile = null;
+
+	//drawing quality kept whatever the frame times (QualityGovernor.FULL
+	//to NO_LANDSCAPE), -1 (any negative) lowers it only while frames are
+	//too slow
+	//("-quality <level>")
+	int quality = -1;
+
+	///=========================================================================
+	///Reads the settings from the command line; unknown options are ignored,
+	///and so are bad values (the setting keeps its default)
+	///@param String[] args	command line arguments
+	///@return the settings
+	///=========================================================================
+	public static Settings parse(String args[])
+	{
+		Settings settings = new Settings();
+
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("-passive"))
+			{
+				settings.activeRendering = false;
+			}
+			else if (args[i].equals("-software"))
+			{
+				settings.softwareRendering = true;
+			}
+			else if (args[i].equals("-resolution") && i + 1 < args.length)
+			{
+				int[] size = parseSize(args[i], args[++i]);
+				if (size != null)
+				{
+					settings.width = size[0];
+					settings.height = size[1];
+				}
+			}
+			else if (args[i].equals("-render") && i + 1 < args.length)
+			{
+				int[] size = parseSize(args[i], args[++i]);
+				if (size != null)
+				{
+					settings.renderWidth = size[0];
+					settings.renderHeight = size[1];
+				}
+			}
+			else if (args[i].equals("-performance"))
+			{
+				settings.performance = true;
+			}
+			else if (args[i].equals("-tickrate") && i + 1 < args.length)
+			{
+				settings.tickRate = parseInt(args[i], args[++i], settings.tickRate);
+			}
+			else if (args[i].equals("-fps") && i + 1 < args.length)
+			{
+				settings.frameRate = parseInt(args[i], args[++i], settings.frameRate);
+			}
+			else if (args[i].equals("-track") && i + 1 < args.length)
+			{
+				settings.trackFile = args[++i];
+			}
+			else if (args[i].equals("-opponents") && i + 1 < args.length)
+			{
+				settings.opponents = Math.max(parseInt(args[i], args[++i], settings.opponents), 0);
+			}
+			else if (args[i].equals("-stats") && i + 1 < args.length)
+			{
+				settings.statsFile = args[++i];
+			}
+			else if (args[i].equals("-statsperiod") && i + 1 < args.length)
+			{
+				settings.statsPeriod = Math.max(parseInt(args[i], args[++i], settings.statsPeriod), 1);
+			}
+			else if (args[i].equals("-record") && i + 1 < args.length)
+			{
+				settings.recordFile = args[++i];
+			}
+			else if (args[i].equals("-replay") && i + 1 < args.length)
+			{
+				settings.replayFile = args[++i];
+			}
+			else if (args[i].equals("-quality") && i + 1 < args.length)
+			{
+				settings.quality = parseInt(args[i], args[++i], settings.quality);
+			}
+		}
+
+		return settings;
+	}
+
+	///=========================================================================
+	///Reads the number of an option
+	///@param String option		the option, to tell which one is bad
+	///@param String value		the number
+	///@param int current		the setting so far
+	///@return the number, or current if it isn't one
+	///=========================================================================
+	private static int parseInt(String option, String value, int current)
+	{
+		try
+		{
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException ex)
+		{
+			System.err.println("Ignoring option:" + option + " " + ex.toString());
+			return current;
+		}
+	}
+
+	///=========================================================================
+	///Reads the size of an option, such as "800x600"; none is smaller than
+	///MIN_WIDTH x MIN_HEIGHT
+	///@param String option		the option, to tell which one is bad
+	///@param String size		the size
+	///@return { width, height }, or null if it isn't a size
+	///=========================================================================
+	private static int[] parseSize(String option, String size)
+	{
+		try
+		{
+			int x = size.indexOf('x');
+			if (x < 0)
+			{
+				throw new NumberFormatException("not a size (<w>x<h>): " + size);
+			}
+
+			int w = Integer.parseInt(size.substring(0, x));
+			int h = Integer.parseInt(size.substring(x + 1));
+			return new int[] { Math.max(w, MIN_WIDTH), Math.max(h, MIN_HEIGHT) };
+		}
+		catch (NumberFormatException ex)
+		{
+			System.err.println("Ignoring option:" + option + " " + ex.toString());
+			return null;
+		}
+	}
+
+	///=========================================================================
+	///@return the width frames are drawn at (see renderWidth)
+	///=========================================================================
+	int getRenderWidth()
+	{
+		if (renderWidth > 0)
+		{
+			return renderWidth;
+		}
+
+		return performance ? Math.max(width / 2, MIN_WIDTH) : width;
+	}
+
+	///=========================================================================
+	///@return the height frames are drawn at (see renderHeight)
+	///=========================================================================
+	int getRenderHeight()
+	{
+		if (renderHeight > 0)
+		{
+			return renderHeight;
+		}
+
+		return performance ? Math.max(height / 2, MIN_HEIGHT) : height;
+	}
+}
@@ -0,0 +1,488 @@
+///=============================================================================
+///@file    Simulation.java
+///@brief   Game rules, stepped one tick at a time.
+///=============================================================================
+
+import java.util.Random;
+
+///=============================================================================
+///The simulation has no AWT dependency at all: it only uses compile-time
+///constants of the drawing classes (Player, Road, Landscape and
+///PolePosition), which javac inlines, so none of those classes is ever loaded
+///when stepping it. This lets us run it without a display (see HeadlessRunner)
+///
+///Positions and sizes are in base units (PolePosition.BASE_WIDTH...), not in
+///pixels of the resolution the game is drawn at, so the race is the same at
+///any resolution.
+///
+///The rules are tuned for BASE_TICK_RATE ticks per second. At any other rate
+///every change a tick makes is scaled by dt (BASE_TICK_RATE / tick rate, see
+///scale), so a second of racing is the same at any rate; at BASE_TICK_RATE
+///nothing is scaled at all.
+///=============================================================================
+class Simulation
+{
+	final public static int BASE_TICK_RATE = 25;	//ticks per second the rules are tuned for
+
+	//what changes every tick, scaled to the tick rate (see scale)
+	final private static int SPEED = 0;
+	final private static int SCROLL = 1;
+	final private static int BORDER = 2;
+	final private static int LANDSCAPE = 3;
+	final private static int TIRES = 4;
+	final private static int QUANTITIES = 5;
+
+	private Track m_Track;
+	private int m_TickRate;			//ticks per second
+	private int[] m_Remainders;		//of each quantity (see scale)
+	private Random m_Random;		//drives the opponents
+	private Traffic m_Traffic;		//the opponents
+	private GameState m_State;		//state after the last tick
+	private GameState m_Previous;	//state before the last tick
+	private FrameStats m_Stats;		//times the stages of a tick, or null
+
+	///=========================================================================
+	///Constructor (no opponents)
+	///@param Track track	the circuit to race on
+	///@param long seed		seed for the random events
+	///=========================================================================
+	public Simulation(Track track, long seed)
+	{
+		this(track, seed, 0);
+	}
+
+	///=========================================================================
+	///Constructor (at BASE_TICK_RATE)
+	///@param Track track		the circuit to race on
+	///@param long seed			seed for the random events (opponents)
+	///@param int opponents		number of opponent cars
+	///=========================================================================
+	public Simulation(Track track, long seed, int opponents)
+	{
+		this(track, seed, opponents, BASE_TICK_RATE);
+	}
+
+	///=========================================================================
+	///Constructor
+	///@param Track track		the circuit to race on
+	///@param long seed			seed for the random events (opponents)
+	///@param int opponents		number of opponent cars
+	///@param int tickRate		ticks per second step() will be called at
+	///=========================================================================
+	public Simulation(Track track, long seed, int opponents, int tickRate)
+	{
+		m_Track = track;
+		m_TickRate = tickRate;
+		m_Remainders = new int[QUANTITIES];
+		m_Random = new Random(seed);
+		m_State = new GameState(opponents);
+		m_Previous = new GameState(opponents);
+
+		//player
+		m_State.steer = Player.STEER_NONE;
+		m_State.frame = Player.STEER_NONE;
+
+		//road
+		m_State.borderChange = 30;
+		m_State.borderSwapped = false;
+
+		//landscape
+		m_State.landscapeOffset = 0;
+
+		//opponents
+		m_Traffic = new Traffic(track, m_Random, m_State, tickRate);
+
+		m_Previous.copyFrom(m_State);
+		m_Stats = null;
+	}
+
+	///=========================================================================
+	///setStats
+	///@param FrameStats stats	where to record how long each stage of a tick
+	///							takes; null (the default) times nothing
+	///=========================================================================
+	public void setStats(FrameStats stats)
+	{
+		m_Stats = stats;
+	}
+
+	///=========================================================================
+	///getState
+	///@return the state after the last tick
+	///=========================================================================
+	public GameState getState()
+	{
+		return m_State;
+	}
+
+	///=========================================================================
+	///getPrevious
+	///@return the state before the last tick (used to interpolate frames)
+	///=========================================================================
+	public GameState getPrevious()
+	{
+		return m_Previous;
+	}
+
+	///=========================================================================
+	///getTrack
+	///@return the circuit we're racing on
+	///=========================================================================
+	public Track getTrack()
+	{
+		return m_Track;
+	}
+
+	///=========================================================================
+	///Changes steering direction
+	///@param int direction Player.STEER_LEFT, STEER_RIGHT or STEER_NONE
+	///=========================================================================
+	public void setSteerDirection(int direction)
+	{
+		m_State.steer = direction;
+	}
+
+	///=========================================================================
+	///Pushes/releases the gas pedal
+	///@param boolean status	true while accelerating
+	///=========================================================================
+	public void accelerate(boolean status)
+	{
+		m_State.accelerating = status;
+	}
+
+	///=========================================================================
+	///Pushes/releases the brake pedal
+	///@param boolean status	true while braking
+	///=========================================================================
+	public void brake(boolean status)
+	{
+		m_State.braking = status;
+	}
+
+	///=========================================================================
+	///Advances the game by one tick
+	///=========================================================================
+	public void step()
+	{
+		m_Previous.copyFrom(m_State);
+
+		if (m_Stats == null)
+		{
+			updateLandscape();
+			updateRoad();
+			updatePlayer();
+			m_Traffic.update(m_State);
+		}
+		else
+		{
+			long t0 = System.nanoTime();
+			updateLandscape();
+			long t1 = System.nanoTime();
+			updateRoad();
+			long t2 = System.nanoTime();
+			updatePlayer();
+			long t3 = System.nanoTime();
+			m_Traffic.update(m_State);
+			long t4 = System.nanoTime();
+
+			m_Stats.record(FrameStats.UPDATE_LANDSCAPE, t1 - t0);
+			m_Stats.record(FrameStats.UPDATE_ROAD, t2 - t1);
+			m_Stats.record(FrameStats.UPDATE_PLAYER, t3 - t2);
+			m_Stats.record(FrameStats.UPDATE_TRAFFIC, t4 - t3);
+		}
+
+		m_State.ticks++;
+	}
+
+	///=========================================================================
+	///Scales a change tuned for a tick at BASE_TICK_RATE to a tick at another
+	///rate. The quantities are whole numbers, so what is left over of a unit
+	///is kept and added to the next change of the same quantity: over a
+	///second the changes add up to the same at any rate.
+	///@param int change		the change in a tick at BASE_TICK_RATE
+	///@param int tickRate		ticks per second
+	///@param int[] remainders	left over of every quantity
+	///@param int i				the quantity changed
+	///@return the change in a tick at tickRate
+	///=========================================================================
+	static int scale(int change, int tickRate, int[] remainders, int i)
+	{
+		int total = change * BASE_TICK_RATE + remainders[i];
+		int scaled = total / tickRate;
+
+		//round down, so the remainder is never negative
+		if (scaled * tickRate > total)
+		{
+			--scaled;
+		}
+
+		remainders[i] = total - scaled * tickRate;
+		return scaled;
+	}
+
+	///=========================================================================
+	///Same as above, for a quantity of the player
+	///=========================================================================
+	private int scale(int change, int i)
+	{
+		return scale(change, m_TickRate, m_Remainders, i);
+	}
+
+	///=========================================================================
+	///The km a car moves in a tick (speed x dt): a km per tick at top speed
+	///at BASE_TICK_RATE; the fraction of a km is kept, so every speed moves
+	///@param int speed		km/h
+	///@param int tickRate	ticks per second
+	///@return km, 32.32 fixed point
+	///=========================================================================
+	static long getAdvance(int speed, int tickRate)
+	{
+		return (long) speed * FixedPoint.FP_LONG_ONE * BASE_TICK_RATE / ((long) Player.MAX_SPEED * tickRate);
+	}
+
+	///=========================================================================
+	///Sets player's speed
+	///@param int speed desired speed in Km/h
+	///=========================================================================
+	private void setSpeed(int speed)
+	{
+		//speed kills! (collisions leave speeds that aren't a multiple of
+		//ACCEL, so we clamp instead of ignoring the change)
+		if (speed > Player.MAX_SPEED)
+		{
+			speed = Player.MAX_SPEED;
+		}
+
+		if (speed < 0)
+		{
+			return;
+		}
+
+		m_State.speed = speed;
+	}
+
+	///=========================================================================
+	///scrolls the road in curves
+	///@param int delta		amount in pixels to scroll
+	///=========================================================================
+	private void scrollRoad(int delta)
+	{
+		m_State.scroll += delta;
+
+		//Do not scroll more than half-road width!
+		if (m_State.scroll < -PolePosition.BASE_WIDTH / 2)
+		{
+			m_State.scroll = -PolePosition.BASE_WIDTH / 2;
+		}
+
+		if (m_State.scroll > PolePosition.BASE_WIDTH / 2)
+		{
+			m_State.scroll = PolePosition.BASE_WIDTH / 2;
+		}
+	}
+
+	///=========================================================================
+	///scrolls the landscape to the left/right
+	///@param int delta	amount of pixels to scroll
+	///					positive: right scroll
+	///					negative: left scroll
+	///=========================================================================
+	private void scrollLandscape(int delta)
+	{
+		//the landscape wraps around, so scrolling is just a modular offset
+		int offset = (m_State.landscapeOffset + delta) % Landscape.PERIOD;
+		if (offset < 0)
+		{
+			offset += Landscape.PERIOD;
+		}
+
+		m_State.landscapeOffset = offset;
+	}
+
+	///=========================================================================
+	///Animates the landscape layer
+	///=========================================================================
+	private void updateLandscape()
+	{
+		//scroll background only when player is accelerating
+		if (!m_State.accelerating)
+		{
+			return;
+		}
+
+		int xPos = FixedPoint.Round(m_Track.getCurve(m_State.distance));
+		scrollLandscape(scale(-xPos, LANDSCAPE));
+	}
+
+	///=========================================================================
+	///To animate the road we could cycle the color palette or use a simple
+	///trick changing the start (y-coord) at which the road-border changes
+	///its color and achieve a similar effect. Subsequently we change the color
+	///every 30 scan lines, for instance, but the start will be pushed down
+	///=========================================================================
+	private void updateRoad()
+	{
+		int xPos, y, delta;
+		int speed = m_State.speed;
+
+		y = m_State.borderChange;
+
+		//update border change & scroll (i.e. animate) only when player is accelerating
+		if (speed > 1)
+		{
+			//animation speed is a function of player's speed
+			y -= scale(speed / 10, BORDER);
+
+			//the road is automatically scrolled along with curves in the
+			//same direction (again, as a function of player's speed)
+			//we first clamp the speed to [0,2], multiply by -1 and
+			//finally add a dela (e.g. 3) to get clamped values of [3, 1]
+			//that is, on MAX speed we divide by 1 (i.e. max scroll); on
+			//MIN speed we divide by 3 (i.e. small scroll)
+			delta = speed / (Player.MAX_SPEED / 2);
+			delta *= -1;
+			delta += 3;
+			xPos = FixedPoint.Round(m_Track.getCurve(m_State.distance));
+			scrollRoad(scale(xPos / delta, SCROLL));
+		}
+
+		//once the first change leaves the screen the stripes below it have
+		//moved down a whole band: swap the colors and start over
+		if (y < 0)
+		{
+			m_State.borderSwapped = !m_State.borderSwapped;
+			y = 30;
+		}
+
+		m_State.borderChange = y;
+
+		//update distance as a function of player's speed (like the
+		//opponents, see Traffic.update)
+		long distance = m_State.distance + getAdvance(speed, m_TickRate);
+
+		//check if we have completed the circuit
+		long length = FixedPoint.LongFromInt(m_Track.getLength());
+		if (distance >= length)
+		{
+			distance -= length;
+			m_State.laps++;
+		}
+
+		m_State.distance = distance;
+	}
+
+	///=========================================================================
+	///Animates the player's car
+	///=========================================================================
+	private void updatePlayer()
+	{
+		GameState s = m_State;
+
+		//update speed
+		if (s.accelerating)
+		{
+			setSpeed(s.speed + scale(Player.ACCEL, SPEED));
+		}
+		else
+		{
+			setSpeed(s.speed + scale(-Player.ACCEL, SPEED));
+		}
+
+		if (s.braking)
+		{
+			setSpeed(s.speed + scale(-Player.BRAKE, SPEED));
+		}
+
+		//driving on grass is slower than on asphalt
+		int pos = s.scroll;
+		int half_road = PolePosition.BASE_WIDTH / 2;
+		int half_player = Player.WIDTH / 2;
+		if (pos < (-half_road + half_player) || pos > (half_road - half_player))
+		{
+			setSpeed(s.speed + scale(-10, SPEED));
+		}
+
+		//check if player has stopped
+		if (s.speed < 1)
+		{
+			s.frame = s.braking ? Player.BRAKE_NONE : Player.STEER_NONE;
+			return;
+		}
+
+		//the tires turn a frame per tick at BASE_TICK_RATE
+		boolean turn = scale(1, TIRES) != 0;
+
+		//change steer direction
+		switch (s.steer)
+		{
+			//=========================
+			//STEER LEFT
+			//=========================
+			case Player.STEER_LEFT:
+				if (s.braking)
+				{
+					s.frame = Player.BRAKE_LEFT;
+				}
+				else
+				{
+					s.frame = animateTires(Player.STEER_LEFT, Player.STEER_LEFT2, turn);
+				}
+				scrollRoad(scale(Road.STEER_LEFT, SCROLL));
+				break;
+
+			//=========================
+			//STEER RIGHT
+			//=========================
+			case Player.STEER_RIGHT:
+				if (s.braking)
+				{
+					s.frame = Player.BRAKE_RIGHT;
+				}
+				else
+				{
+					s.frame = animateTires(Player.STEER_RIGHT, Player.STEER_RIGHT2, turn);
+				}
+				scrollRoad(scale(Road.STEER_RIGHT, SCROLL));
+				break;
+
+			//=========================
+			//STEER NONE
+			//=========================
+			case Player.STEER_NONE:
+				if (s.braking)
+				{
+					s.frame = Player.BRAKE_NONE;
+				}
+				else
+				{
+					s.frame = animateTires(Player.STEER_NONE, Player.STEER_NONE2, turn);
+				}
+				break;
+		}
+	}
+
+	///=========================================================================
+	///Animates the tires: the car's frame flips between the two frames of its
+	///steering direction whenever they turn
+	///@param int frame		first frame of the direction
+	///@param int frame2	second frame of the direction
+	///@param boolean turn	whether the tires turn this tick
+	///@return the car's frame
+	///=========================================================================
+	private int animateTires(int frame, int frame2, boolean turn)
+	{
+		int current = m_State.frame;
+		if (current != frame && current != frame2)
+		{
+			return frame;
+		}
+
+		if (!turn)
+		{
+			return current;
+		}
+
+		return (current == frame) ? frame2 : frame;
+	}
+}
@@ -0,0 +1,61 @@
+///=============================================================================
+///@file    Snapshot.java
+///@brief   What a frame is drawn from: the states of the last two ticks.
+///=============================================================================
+
+///=============================================================================
+///The simulation thread fills a snapshot after its ticks and publishes it
+///through a SnapshotBuffer; from then on nothing writes to it until the
+///renderer has let go of it, so a frame never sees a tick halfway through.
+///The states are copies: the simulation goes on with its own.
+///=============================================================================
+class Snapshot
+{
+	final GameState prev;	//state before the last tick
+	final GameState cur;	//state after the last tick
+	long time;				//System.nanoTime() cur stands for
+	long inputTime;			//earliest input not on screen yet (InputQueue.NONE)
+
+	///=========================================================================
+	///Constructor
+	///@param int opponents	number of opponent cars
+	///=========================================================================
+	public Snapshot(int opponents)
+	{
+		prev = new GameState(opponents);
+		cur = new GameState(opponents);
+		time = 0;
+		inputTime = InputQueue.NONE;
+	}
+
+	///=========================================================================
+	///Copies the last two states of a simulation
+	///@param Simulation sim	the simulation
+	///@param long time			System.nanoTime() its current state stands for
+	///@param long inputTime	earliest input in the states not on screen yet
+	///=========================================================================
+	public void set(Simulation sim, long time, long inputTime)
+	{
+		prev.copyFrom(sim.getPrevious());
+		cur.copyFrom(sim.getState());
+		this.time = time;
+		this.inputTime = inputTime;
+	}
+
+	///=========================================================================
+	///@param long now		System.nanoTime() of the frame
+	///@param long tickTime	ns per tick
+	///@return how far the frame is between prev (0) and cur (1); a frame
+	///		   later than the next tick (the simulation fell behind) shows cur
+	///=========================================================================
+	public float getAlpha(long now, long tickTime)
+	{
+		long elapsed = now - time;
+		if (elapsed <= 0)
+		{
+			return 0.0f;
+		}
+
+		return (elapsed >= tickTime) ? 1.0f : (float) elapsed / tickTime;
+	}
+}
@@ -0,0 +1,78 @@
+///=============================================================================
+///@file    SnapshotBuffer.java
+///@brief   Hands the latest Snapshot from the simulation to the renderer.
+///=============================================================================
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+///=============================================================================
+///A triple buffer: of its three snapshots the writer fills one, the reader
+///draws from another and the third is the latest one published. Publishing
+///swaps the one just filled with the latest; reading swaps the one drawn from
+///with the latest, if a newer one was published since. Each swap is a single
+///atomic exchange, so neither side ever waits for the other or sees a
+///snapshot being filled: the writer may publish any number of times while a
+///frame is drawn (the reader then skips to the newest), and the reader may
+///draw any number of frames from the same snapshot.
+///
+///There is exactly one writer and one reader thread. The exchange makes
+///whatever was written to a snapshot before it visible to the other side.
+///=============================================================================
+class SnapshotBuffer
+{
+	final private static int INDEX = 3;		//bits of m_Latest telling the snapshot
+	final private static int FRESH = 4;		//set when published, cleared when read
+
+	private Snapshot[] m_Snapshots;
+	private AtomicInteger m_Latest;		//the latest published
+	private int m_Back;					//the writer's
+	private int m_Front;				//the reader's
+
+	///=========================================================================
+	///Constructor
+	///@param int opponents	number of opponent cars in the states
+	///=========================================================================
+	public SnapshotBuffer(int opponents)
+	{
+		m_Snapshots = new Snapshot[3];
+		for (int i = 0; i < m_Snapshots.length; ++i)
+		{
+			m_Snapshots[i] = new Snapshot(opponents);
+		}
+
+		m_Front = 0;
+		m_Latest = new AtomicInteger(1);
+		m_Back = 2;
+	}
+
+	///=========================================================================
+	///@return the snapshot to fill; writer side
+	///=========================================================================
+	public Snapshot getBack()
+	{
+		return m_Snapshots[m_Back];
+	}
+
+	///=========================================================================
+	///Makes the snapshot filled the latest one, and takes the one it replaces
+	///to fill next; writer side
+	///=========================================================================
+	public void publish()
+	{
+		m_Back = m_Latest.getAndSet(m_Back | FRESH) & INDEX;
+	}
+
+	///=========================================================================
+	///@return the latest snapshot published; reader side. Nothing writes to
+	///		   it until the next read
+	///=========================================================================
+	public Snapshot read()
+	{
+		if ((m_Latest.get() & FRESH) != 0)
+		{
+			m_Front = m_Latest.getAndSet(m_Front) & INDEX;
+		}
+
+		return m_Snapshots[m_Front];
+	}
+}
@@ -0,0 +1,150 @@
+///=============================================================================
+///@file    SoftwareRenderer.java
+///@brief   Composes whole frames in software, in parallel horizontal bands.
+///=============================================================================
+
+import java.awt.image.*;
+import java.util.concurrent.*;
+
+///=============================================================================
+///The frame is an int RGB image we own. Everything on it is submitted to a
+///RenderQueue (culled and sorted) first; then the frame is cut into bands of
+///RenderQueue.BAND_HEIGHT rows and each band is drawn back to front, start to
+///finish, by one worker of a fork/join pool, skipping the commands that miss
+///it. The frame keeps its pixels, so only the bands that changed since the
+///last frame are drawn (see RenderQueue.findDirty); the others are left as
+///they are. Bands never share a pixel, so workers need no locking and every
+///band stays hot in its worker's cache. This works because every drawable
+///can draw any range of rows on its own; in particular the road's stripe
+///colors are a closed-form function of the scanline (see Road.isRedStripe)
+///rather than something carried from one scanline to the next.
+///=============================================================================
+class SoftwareRenderer
+{
+	final private static int SKY_RGB = PolePosition.SKY_COLOR.getRGB() & 0xFFFFFF;
+	final private static int GRASS_RGB = PolePosition.GRASS_COLOR.getRGB() & 0xFFFFFF;
+
+	private ForkJoinPool m_Pool;
+	private BufferedImage m_Frame;
+	private int[] m_Pixels;			//the frame's pixels
+	private int m_Width;
+	private int m_Height;
+	private Drawable[] m_Drawables;	//everything drawn, submitted in this order
+
+	//the frame being drawn; filled before the bands are forked, which makes
+	//it visible to the workers
+	private RenderQueue m_Queue;
+
+	///=========================================================================
+	///Constructor
+	///@param Drawable[] drawables	everything to draw; the order only matters
+	///								for things at the same depth
+	///=========================================================================
+	public SoftwareRenderer(Drawable[] drawables)
+	{
+		m_Pool = new ForkJoinPool();
+		m_Width = PolePosition.APP_WIDTH;
+		m_Height = PolePosition.APP_HEIGHT;
+		m_Frame = new BufferedImage(m_Width, m_Height, BufferedImage.TYPE_INT_RGB);
+		m_Pixels = ((DataBufferInt) m_Frame.getRaster().getDataBuffer()).getData();
+		m_Drawables = drawables;
+		m_Queue = new RenderQueue();
+	}
+
+	///=========================================================================
+	///Draws a frame in between the previous and the current tick
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///@return the frame; it is reused by the next call
+	///=========================================================================
+	public BufferedImage render(GameState prev, GameState cur, float alpha)
+	{
+		m_Queue.clear();
+		for (int i = 0; i < m_Drawables.length; ++i)
+		{
+			m_Drawables[i].submit(m_Queue, prev, cur, alpha);
+		}
+		m_Queue.sort();
+
+		if (m_Queue.findDirty() > 0)
+		{
+			m_Pool.invoke(new Band(0, m_Queue.getBands()));
+		}
+
+		return m_Frame;
+	}
+
+	///=========================================================================
+	///Forgets what the frame shows: the next one is drawn whole
+	///=========================================================================
+	public void invalidate()
+	{
+		m_Queue.invalidate();
+	}
+
+	///=========================================================================
+	///@return the frame drawn by the last call to render()
+	///=========================================================================
+	public BufferedImage getImage()
+	{
+		return m_Frame;
+	}
+
+	///=========================================================================
+	///@return its pixels
+	///=========================================================================
+	public int[] getPixels()
+	{
+		return m_Pixels;
+	}
+
+	///=========================================================================
+	///Draws the rows [top, bottom) of the frame (back to front)
+	///@param int top		first row to draw
+	///@param int bottom	first row not to draw
+	///=========================================================================
+	private void renderRows(int top, int bottom)
+	{
+		int[] pixels = m_Pixels;
+
+		Raster.fill(pixels, m_Width, top, bottom, 0, 0, m_Width, PolePosition.SKY_HEIGHT, SKY_RGB);
+		Raster.fill(pixels, m_Width, top, bottom, 0, PolePosition.SKY_HEIGHT, m_Width, PolePosition.ROAD_HEIGHT, GRASS_RGB);
+		m_Queue.draw(pixels, m_Width, top, bottom);
+	}
+
+	///=========================================================================
+	///A range of bands [first, last); split in halves until it is a single
+	///band, which is drawn if it is dirty
+	///=========================================================================
+	private class Band extends RecursiveAction
+	{
+		final private static long serialVersionUID = 1L;
+
+		private int m_First;
+		private int m_Last;
+
+		Band(int first, int last)
+		{
+			m_First = first;
+			m_Last = last;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (m_Last - m_First <= 1)
+			{
+				if (m_Queue.isDirty(m_First))
+				{
+					int top = m_First * RenderQueue.BAND_HEIGHT;
+					renderRows(top, Math.min(top + RenderQueue.BAND_HEIGHT, m_Height));
+				}
+				return;
+			}
+
+			int middle = (m_First + m_Last) / 2;
+			invokeAll(new Band(m_First, middle), new Band(middle, m_Last));
+		}
+	}
+}
@@ -7,15 +7,16 @@
 ///=============================================================================
 
 import java.awt.*;
-import java.net.*;
 
-class Sprite 
+class Sprite implements Drawable 
 {
 
 	private int posX,  posY;
 	private int frame,  nFrames;
 	private boolean active;
 	protected Image sprites[];
+	private int pixels[][];		//ARGB pixels of each frame (software rendering)
+	private int width,  height;	//size of the last frame (collision bounds)
 
 	public Sprite(int nFrames) 
 	{
@@ -25,6 +26,7 @@ class Sprite
 		frame = 1;
 		this.nFrames = nFrames;
 		sprites = new Image[nFrames + 1];
+		pixels = new int[nFrames + 1][];
 	}
 
 	public int getX() 
@@ -39,12 +41,12 @@ class Sprite
 
 	public int getW() 
 	{
-		return sprites[nFrames].getWidth(null);
+		return width;
 	}
 
 	public int getH() 
 	{
-		return sprites[nFrames].getHeight(null);
+		return height;
 	}
 
 	public int getFrame() 
@@ -89,20 +91,22 @@ class Sprite
 
 	///=========================================================================
 	///addFrame()
-	///loads a.PNG file and adds it to our sprites array at the given frame
+	///adds a .PNG file to our sprites array at the given frame; the image is
+	///loaded once (see ImageCache) and shared with every sprite using it
 	///@param int frameNum the frame number (1 to N)
 	///@param String path the absolute path to the image
 	///=========================================================================
 	public void addFrame(int frameNum, String path) 
 	{
-		try 
-		{
-			URL url = Sprite.class.getResource(path);
-			sprites[frameNum] = Toolkit.getDefaultToolkit().getImage(url);
-		} 
-		catch (Exception ex) 
+		sprites[frameNum] = ImageCache.getImage(path);
+		pixels[frameNum] = ImageCache.getPixels(path);
+
+		//the bounds used by collide(); cached, so a test doesn't have to
+		//ask the images for their size
+		if (frameNum == nFrames) 
 		{
-			System.err.println("Could not load image:" + path + " " + ex.toString());
+			width = sprites[frameNum].getWidth(null);
+			height = sprites[frameNum].getHeight(null);
 		}
 	}
 
@@ -139,4 +143,67 @@ class Sprite
 	{
 		g.drawImage(sprites[frame], posX, posY, null);
 	}
+
+	///=========================================================================
+	///submit()
+	///submits the current frame, if the sprite is active; a sprite stands on
+	///the road, so it goes in front of whatever stands higher up the screen
+	///@param RenderQueue queue	the queue to submit to
+	///@param GameState prev	state before the last tick
+	///@param GameState cur		state after the last tick
+	///@param float alpha		0 draws the previous tick, 1 draws the current one
+	///=========================================================================
+	public void submit(RenderQueue queue, GameState prev, GameState cur, float alpha) 
+	{
+		if (active) 
+		{
+			int w = getPixelWidth(frame);
+			int h = getPixelHeight(frame);
+			int depth = PolePosition.APP_HEIGHT - (posY + h);
+			queue.submit(this, frame, RenderQueue.key(RenderQueue.LAYER_OBJECTS, depth), posX, posY, w, h);
+		}
+	}
+
+	///=========================================================================
+	///draw()
+	///draws a frame at the sprite's position
+	///@param Graphics g	an awt.Graphics object to draw into
+	///@param int item		the frame number (1 to N)
+	///=========================================================================
+	public void draw(Graphics g, int item) 
+	{
+		g.drawImage(sprites[item], posX, posY, null);
+	}
+
+	///=========================================================================
+	///draw()
+	///draws the rows [top, bottom) of a frame straight into int RGB pixels
+	///@param int[] dst		the pixels to draw into
+	///@param int width		pixels per row
+	///@param int top		first row we may draw into
+	///@param int bottom	first row we may not draw into
+	///@param int item		the frame number (1 to N)
+	///=========================================================================
+	public void draw(int[] dst, int width, int top, int bottom, int item) 
+	{
+		Raster.blit(dst, width, top, bottom, pixels[item], getPixelWidth(item), getPixelHeight(item), posX, posY);
+	}
+
+	///=========================================================================
+	///@param int frameNum the frame number (1 to N)
+	///@return width of the frame's pixels
+	///=========================================================================
+	public int getPixelWidth(int frameNum) 
+	{
+		return sprites[frameNum].getWidth(null);
+	}
+
+	///=========================================================================
+	///@param int frameNum the frame number (1 to N)
+	///@return height of the frame's pixels
+	///=========================================================================
+	public int getPixelHeight(int frameNum) 
+	{
+		return sprites[frameNum].getHeight(null);
+	}
 }
@@ -0,0 +1,91 @@
+///=============================================================================
+///@file    StatsOverlay.java
+///@brief   Shows the frame timings (FrameStats) on top of the game.
+///=============================================================================
+
+import java.awt.*;
+
+///=============================================================================
+///The table is made into strings only a couple of times per second; in
+///between every frame draws the same strings, so showing the numbers costs
+///little more than the text itself. The last line is the quality level the
+///frames are drawn at.
+///=============================================================================
+class StatsOverlay
+{
+	final private static long REFRESH = 500000000L;		//ns between updates of the table
+	final private static int MARGIN = 8;
+	final private static Color BACKGROUND = new Color(0, 0, 0, 160);
+	final private static Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	private FrameStats m_Stats;
+	private QualityGovernor m_Governor;
+	private String[] m_Lines;		//the table, a line per stage after the title, then the quality
+	private long m_Updated;			//when the lines were made (System.nanoTime())
+
+	///=========================================================================
+	///Constructor
+	///@param FrameStats stats	the timings to show
+	///@param QualityGovernor governor	the quality to show
+	///=========================================================================
+	public StatsOverlay(FrameStats stats, QualityGovernor governor)
+	{
+		m_Stats = stats;
+		m_Governor = governor;
+		m_Lines = new String[stats.getStages() + 2];
+		m_Updated = System.nanoTime() - REFRESH;
+	}
+
+	///=========================================================================
+	///Makes the table from the timings
+	///=========================================================================
+	private void update()
+	{
+		m_Lines[0] = String.format("%-17s %7s %8s %8s %8s %8s", "stage (us)", "count", "p50", "p99", "p99.9", "max");
+		for (int i = 0; i < m_Stats.getStages(); ++i)
+		{
+			Histogram h = m_Stats.getHistogram(i);
+			m_Lines[i + 1] = String.format("%-17s %7d %8s %8s %8s %8s", m_Stats.getName(i), h.getCount(),
+				FrameStats.toMicros(h.getPercentile(50)), FrameStats.toMicros(h.getPercentile(99)),
+				FrameStats.toMicros(h.getPercentile(99.9)), FrameStats.toMicros(h.getMax()));
+		}
+
+		int level = m_Governor.getLevel();
+		m_Lines[m_Lines.length - 1] = String.format("quality %d (%s), %s, %d changes", level, QualityGovernor.getName(level),
+			m_Governor.isAdaptive() ? "adaptive" : "fixed", m_Governor.getChanges());
+	}
+
+	///=========================================================================
+	///Draws the table in the top right corner
+	///@param Graphics g	an awt.Graphics object to draw into
+	///@param int width		the width of what g draws into
+	///@return the first row below the table
+	///=========================================================================
+	public int draw(Graphics g, int width)
+	{
+		long now = System.nanoTime();
+		if (now - m_Updated >= REFRESH)
+		{
+			update();
+			m_Updated = now;
+		}
+
+		g.setFont(FONT);
+		FontMetrics metrics = g.getFontMetrics();
+		int lineHeight = metrics.getHeight();
+		int tableWidth = metrics.stringWidth(m_Lines[0]);
+		int x = width - tableWidth - MARGIN;
+
+		int height = m_Lines.length * lineHeight + MARGIN;
+		g.setColor(BACKGROUND);
+		g.fillRect(x - MARGIN / 2, MARGIN / 2, tableWidth + MARGIN, height);
+
+		g.setColor(Color.WHITE);
+		for (int i = 0; i < m_Lines.length; ++i)
+		{
+			g.drawString(m_Lines[i], x, MARGIN + metrics.getAscent() + i * lineHeight);
+		}
+
+		return MARGIN / 2 + height;
+	}
+}
@@ -0,0 +1,397 @@
+///=============================================================================
+///@file    Track.java
+///@brief   Circuit (track) description class.
+///=============================================================================
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+///=============================================================================
+///A circuit is a sequence of segments, each one the curve offset of 1km of
+///road (see ROAD). The built-in circuit lives in memory; others come from a
+///binary track file (see TrackCompiler for how to make one):
+///
+/// offset  size  contents
+/// 0       4     magic "PPTK"
+/// 4       4     version (1)
+/// 8       4     number of segments N (> 0)
+/// 12      N     the segments, one signed byte each (-9..9)
+///
+///(ints are big-endian). Track files can hold millions of segments, so they
+///are not read in: we memory-map a window of WINDOW_SIZE segments around the
+///player and slide it along as the player drives. Only the window is mapped,
+///and only the pages of it that are actually read are loaded by the OS. The
+///first HEAD_SIZE segments are also kept in memory: near the end of a lap the
+///road ahead goes round to them, and reading them from the window would move
+///it back and forth on every read.
+///=============================================================================
+class Track
+{
+	final public static int MAGIC = 0x5050544B;		//"PPTK"
+	final public static int VERSION = 1;
+	final public static int HEADER_SIZE = 12;		//bytes before the segments
+	final public static int MAX_OFFSET = 9;			//largest curve offset (either way)
+
+	final private static int WINDOW_SIZE = 1 << 16;	//segments mapped at a time
+	final private static int HEAD_SIZE = 256;		//segments at the start kept in memory
+
+	///=========================================================================
+	///We define the road as a set of offsets
+	///each offset represents how far from the center line is the road.
+	///Positive offsets represent right-turns and negative offsets represent
+	///left-turns.
+	///Later, we'll scale these offsets to draw curves; the scale will be a
+	///function of the distance (in our case y-coordinate, as y approximates z)
+	///@TODO lacks physics: each element represents 10km in the circuit
+	///This is the built-in circuit; other circuits come from track files.
+	///=========================================================================
+	final private int[] ROAD =
+	{
+		 0, -1, -2, -3, -4, -5, -6, -7, -8, -9,
+		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
+		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
+		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
+		-9, -9, -9, -9, -9, -9, -9, -9, -9, -9,
+		-8, -7, -6, -5, -4, -3, -2, -1,  0,  1,
+		 2,  3,  4,  5,  4,  3,  2,  1,  2,  3,
+		 4,  5,  6,  7,  8,  9,  9,  9,  9,  9,
+		 9,  9,  9,  9,  9,  9,  9,  9,  8,  7,
+		 6,  5,  5,  4,  3,  2,  1,  0,  0,  0,
+		 0,  0,  0,  0,  0,  0,  0,  0,  0,  0,
+		 1,  1,  2,  2,  2,  2,  2,  2,  3,  3,
+		 0,  0,  0,  0,  0,  1,  2,  3,  4,  5,
+		 5,  5,  5,  5,  5,  6,  6,  6,  6,  6,
+		 5,  4,  3,  3,  3,  3,  3,  3,  3,  2,
+		 1,  0,  0,  0,  0,  0,  0,  0,  0,  0,
+		-1, -2, -3, -4, -5, -6, -7, -8, -9, -9,
+		-8, -7, -7, -7, -7, -7, -7, -7, -7, -7,
+		-6, -5, -5, -5, -5, -4, -3, -2, -1,  0,
+		 0,  0,  0,  0,  0,  0,  0,  0,  0,  0,
+	};
+
+	///=========================================================================
+	///The scale to represent curves must be a function of distance as we stated
+	///above; so we use a basic quadratic function to compute this scale.
+	///The distance is clamped to [0,1] and squared; then we multiply this
+	///by a scale constant which is computed as follows:
+	/// sc = (WIDTH/2) / MAX_ROAD_OFFSET
+	/// sc - Epsilon
+	///where MAX_ROAD_OFFSET is the maximum number in the road array and
+	///epsilon is a small amount we substract (1% of HEIGHT) in order to avoid
+	///having a curve that goes to the WIDTH of the canvas
+	///=========================================================================
+	final public static int CONST_S = (PolePosition.BASE_WIDTH / 2) / 10 - (PolePosition.BASE_ROAD_HEIGHT / 100);
+
+	private int[] m_Scale;			//predefined array of scales per scanline
+	private int m_Length;			//number of segments
+	private FileChannel m_Channel;	//the track file, null for the built-in circuit
+	private byte[] m_Head;			//the first HEAD_SIZE segments (or all of them)
+
+	//the segments we can read right now; replaced (never modified) when the
+	//player leaves it, so the render threads can read it at the same time
+	private volatile Window m_Window;
+
+	private static class Window
+	{
+		final int start;			//first segment in the window
+		final int end;				//first segment after the window
+		final ByteBuffer segments;	//segments [start, end)
+
+		Window(int start, int end, ByteBuffer segments)
+		{
+			this.start = start;
+			this.end = end;
+			this.segments = segments;
+		}
+	}
+
+	///=========================================================================
+	///Default constructor: the built-in circuit
+	///=========================================================================
+	public Track()
+	{
+		byte[] segments = new byte[ROAD.length];
+		for (int i = 0; i < ROAD.length; ++i)
+		{
+			segments[i] = (byte) ROAD[i];
+		}
+
+		m_Length = ROAD.length;
+		m_Channel = null;
+		m_Head = segments;
+		m_Window = new Window(0, m_Length, ByteBuffer.wrap(segments));
+		initScale();
+	}
+
+	///=========================================================================
+	///Constructor: a circuit from a track file
+	///@param File file		the track file
+	///@throws IOException if the file can't be read or is not a track file
+	///=========================================================================
+	public Track(File file) throws IOException
+	{
+		m_Channel = new RandomAccessFile(file, "r").getChannel();
+
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			m_Channel.read(header, 0);
+			if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC)
+			{
+				throw new IOException(file + " is not a track file");
+			}
+
+			if (header.getInt(4) != VERSION)
+			{
+				throw new IOException(file + ": unsupported track version " + header.getInt(4));
+			}
+
+			m_Length = header.getInt(8);
+			if (m_Length <= 0 || m_Channel.size() < HEADER_SIZE + (long) m_Length)
+			{
+				throw new IOException(file + " is truncated");
+			}
+
+			m_Head = new byte[Math.min(HEAD_SIZE, m_Length)];
+			read(m_Head);
+		}
+		catch (IOException ex)
+		{
+			m_Channel.close();
+			throw ex;
+		}
+
+		m_Window = map(0);
+		initScale();
+	}
+
+	///=========================================================================
+	///Opens a circuit, falling back to the built-in one if there is no file
+	///or it can't be read
+	///@param String path	the track file, null for the built-in circuit
+	///@return the circuit
+	///=========================================================================
+	public static Track open(String path)
+	{
+		if (path != null)
+		{
+			try
+			{
+				return new Track(new File(path));
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not load track:" + path + " " + ex.toString());
+			}
+		}
+
+		return new Track();
+	}
+
+	///=========================================================================
+	///Builds the table of scales per scanline
+	///=========================================================================
+	private void initScale()
+	{
+		m_Scale = new int[PolePosition.BASE_ROAD_HEIGHT];
+
+		for (int i = 0; i < PolePosition.BASE_ROAD_HEIGHT; ++i)
+		{
+			//clamp distance to [0,1] (16.16)
+			int tmp = FixedPoint.FromRatio(i, PolePosition.BASE_ROAD_HEIGHT);
+
+			//scale as a function of distance
+			int cube = FixedPoint.Mul(FixedPoint.Mul(tmp, tmp), tmp);
+			m_Scale[i] = FixedPoint.ToInt(FixedPoint.MulInt(cube, CONST_S));
+		}
+	}
+
+	///=========================================================================
+	///getLength
+	///@return the length of the circuit in km
+	///=========================================================================
+	public int getLength()
+	{
+		return m_Length;
+	}
+
+	///=========================================================================
+	///getOffset
+	///@param int distance	position on the road in km
+	///@return the road-offset (curve) at the given position
+	///=========================================================================
+	public int getOffset(int distance)
+	{
+		Window window = m_Window;
+
+		if (distance < window.start || distance >= window.end)
+		{
+			//the start of the circuit is at hand without moving the window
+			if (distance < m_Head.length)
+			{
+				return m_Head[distance];
+			}
+
+			window = slide(distance);
+		}
+
+		return window.segments.get(distance - window.start);
+	}
+
+	///=========================================================================
+	///getOffset
+	///@param int distance	position on the road in km
+	///@param int ahead		km further on
+	///@return the road-offset (curve) that far ahead, round past the start
+	///		   line if need be
+	///=========================================================================
+	public int getOffset(int distance, int ahead)
+	{
+		return getOffset((distance + ahead) % m_Length);
+	}
+
+	///=========================================================================
+	///getOffsets
+	///@return a copy of the offsets of every segment, read in one go: the
+	///		   window stays where it is
+	///=========================================================================
+	public byte[] getOffsets()
+	{
+		byte[] offsets = new byte[m_Length];
+		if (m_Channel == null)
+		{
+			m_Window.segments.duplicate().get(offsets);
+			return offsets;
+		}
+
+		try
+		{
+			read(offsets);
+		}
+		catch (IOException ex)
+		{
+			//the file was readable a moment ago; nothing sensible to do now
+			throw new IllegalStateException("Could not read the track: " + ex.toString());
+		}
+
+		return offsets;
+	}
+
+	///=========================================================================
+	///Reads the first segments of the track file, without mapping them
+	///@param byte[] segments	where to read them, as many as it holds
+	///@throws IOException if the file can't be read
+	///=========================================================================
+	private void read(byte[] segments) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(segments);
+		while (buffer.hasRemaining())
+		{
+			if (m_Channel.read(buffer, HEADER_SIZE + (long) buffer.position()) < 0)
+			{
+				throw new IOException("unexpected end of file");
+			}
+		}
+	}
+
+	///=========================================================================
+	///getCurve
+	///@param long position	position on the road in km, 32.32 fixed point
+	///						(0 to getLength())
+	///@return the road-offset (curve) at the given position in 16.16: the
+	///		   offsets of its segment and of the next one, interpolated, so
+	///		   curves come and go gradually instead of an offset at a time
+	///=========================================================================
+	public int getCurve(long position)
+	{
+		int segment = FixedPoint.LongToInt(position);
+		return getCurve(getOffset(segment), getOffset(segment, 1), position);
+	}
+
+	///=========================================================================
+	///Same as above, from the offsets of the segment and of the next one
+	///=========================================================================
+	static int getCurve(int offset, int next, long position)
+	{
+		//the top 16 bits of the fraction are plenty
+		int fraction = (int) (position >>> (FixedPoint.FP_LONG_SHIFT - FixedPoint.FP_SHIFT)) & (FixedPoint.FP_ONE - 1);
+		return FixedPoint.FromInt(offset) + (next - offset) * fraction;
+	}
+
+	///=========================================================================
+	///A position in between the previous and the current tick; cars only go
+	///forwards, so a position that went down went round past the start line
+	///@param long prev		the position at the previous tick (32.32 km)
+	///@param long cur		the position at the current tick
+	///@param float alpha	0 for the previous tick, 1 for the current one
+	///@return the position in between (32.32 km)
+	///=========================================================================
+	public long interpolate(long prev, long cur, float alpha)
+	{
+		long length = FixedPoint.LongFromInt(m_Length);
+		long delta = cur - prev;
+		if (delta < 0)
+		{
+			delta += length;
+		}
+
+		long position = prev + (long) (delta * (double) alpha);
+		return (position >= length) ? position - length : position;
+	}
+
+	///=========================================================================
+	///Moves the window so it holds the given segment
+	///@param int distance	the segment we need
+	///@return the new window
+	///=========================================================================
+	private synchronized Window slide(int distance)
+	{
+		//another thread may have moved it already
+		Window window = m_Window;
+		if (distance >= window.start && distance < window.end)
+		{
+			return window;
+		}
+
+		//the player mostly drives forward: keep a little of the road behind
+		int start = Math.max(0, distance - WINDOW_SIZE / 8);
+		window = map(start);
+		m_Window = window;
+
+		return window;
+	}
+
+	///=========================================================================
+	///Maps a window of the track file
+	///@param int start		first segment of the window
+	///@return the window
+	///=========================================================================
+	private Window map(int start)
+	{
+		int end = (int) Math.min((long) start + WINDOW_SIZE, m_Length);
+
+		try
+		{
+			ByteBuffer segments = m_Channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long) start, end - start);
+			return new Window(start, end, segments);
+		}
+		catch (IOException ex)
+		{
+			//the file was readable a moment ago; nothing sensible to do now
+			throw new IllegalStateException("Could not read the track: " + ex.toString());
+		}
+	}
+
+	///=========================================================================
+	///getScale
+	///@param int scanline number, at the base resolution
+	///@return the road-scale of given scanline (base pixels per curve unit)
+	///=========================================================================
+	public int getScale(int scanLine)
+	{
+		return m_Scale[scanLine];
+	}
+}
@@ -0,0 +1,224 @@
+///=============================================================================
+///@file    TrackCompiler.java
+///@brief   Makes track files (see Track) from text, or generates them.
+///=============================================================================
+
+import java.io.*;
+import java.util.Random;
+
+///=============================================================================
+///Usage: java -cp <classes> TrackCompiler <circuit.txt> <circuit.trk>
+///       java -cp <classes> TrackCompiler -generate <segments> [-seed <n>]
+///            <circuit.trk>
+///
+///The text is a list of curve offsets (-9..9), one per segment, separated by
+///blanks or new lines; "value*count" repeats a value and '#' starts a comment
+///that runs to the end of the line, e.g.
+///
+/// # a long left turn and back
+/// 0 -1 -2 -3 -9*40 -3 -2 -1 0*20
+///
+///-generate writes a random circuit of any length (e.g. endurance tracks with
+///millions of segments) without holding it in memory.
+///=============================================================================
+public class TrackCompiler
+{
+	final private static int MIN_STRETCH = 20;		//shortest curve or straight
+	final private static int MAX_STRETCH = 200;		//longest one
+
+	public static void main(String args[])
+	{
+		try
+		{
+			if (args.length >= 3 && args[0].equals("-generate"))
+			{
+				long seed = System.currentTimeMillis();
+				if (args.length >= 5 && args[2].equals("-seed"))
+				{
+					seed = Long.parseLong(args[3]);
+				}
+
+				generate(Integer.parseInt(args[1]), seed, new File(args[args.length - 1]));
+			}
+			else if (args.length == 2)
+			{
+				compile(new File(args[0]), new File(args[1]));
+			}
+			else
+			{
+				System.err.println("usage: TrackCompiler <circuit.txt> <circuit.trk>");
+				System.err.println("       TrackCompiler -generate <segments> [-seed <n>] <circuit.trk>");
+				System.exit(2);
+			}
+		}
+		catch (IOException ex)
+		{
+			System.err.println(ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+	///=========================================================================
+	///Compiles a text circuit into a track file
+	///@param File in	the text
+	///@param File out	the track file to write
+	///@throws IOException if the text can't be read or is not valid
+	///=========================================================================
+	public static void compile(File in, File out) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(in), "ISO-8859-1"));
+		DataOutputStream writer = create(out);
+		int count = 0;
+
+		try
+		{
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				++lineNumber;
+
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+				{
+					line = line.substring(0, comment);
+				}
+
+				String[] tokens = line.trim().split("\\s+");
+				for (int i = 0; i < tokens.length; ++i)
+				{
+					if (tokens[i].length() == 0)
+					{
+						continue;
+					}
+
+					int value;
+					int repeat = 1;
+					try
+					{
+						int star = tokens[i].indexOf('*');
+						if (star >= 0)
+						{
+							value = Integer.parseInt(tokens[i].substring(0, star));
+							repeat = Integer.parseInt(tokens[i].substring(star + 1));
+						}
+						else
+						{
+							value = Integer.parseInt(tokens[i]);
+						}
+					}
+					catch (NumberFormatException ex)
+					{
+						throw new IOException(in + ":" + lineNumber + ": not a segment: " + tokens[i]);
+					}
+
+					if (value < -Track.MAX_OFFSET || value > Track.MAX_OFFSET || repeat < 1)
+					{
+						throw new IOException(in + ":" + lineNumber + ": out of range: " + tokens[i]);
+					}
+
+					if ((long) count + repeat > Integer.MAX_VALUE)
+					{
+						throw new IOException(in + ":" + lineNumber + ": too many segments");
+					}
+
+					for (int r = 0; r < repeat; ++r)
+					{
+						writer.writeByte(value);
+					}
+					count += repeat;
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+			writer.close();
+		}
+
+		if (count == 0)
+		{
+			throw new IOException(in + ": no segments");
+		}
+
+		setCount(out, count);
+	}
+
+	///=========================================================================
+	///Writes a random circuit: curves and straights of random length, the
+	///curve offset moving by 1 per segment so there are no sudden turns
+	///@param int segments	length of the circuit
+	///@param long seed		for the random numbers
+	///@param File out		the track file to write
+	///@throws IOException if the file can't be written
+	///=========================================================================
+	public static void generate(int segments, long seed, File out) throws IOException
+	{
+		if (segments <= 0)
+		{
+			throw new IOException("a circuit needs at least 1 segment");
+		}
+
+		Random random = new Random(seed);
+		DataOutputStream writer = create(out);
+		int offset = 0;
+		int target = 0;
+		int hold = 0;
+
+		try
+		{
+			for (int i = 0; i < segments; ++i)
+			{
+				if (offset != target)
+				{
+					offset += (target > offset) ? 1 : -1;
+				}
+				else if (hold > 0)
+				{
+					--hold;
+				}
+				else
+				{
+					//next stretch: a straight every now and then, else a curve
+					target = random.nextInt(3) == 0 ? 0 : random.nextInt(2 * Track.MAX_OFFSET + 1) - Track.MAX_OFFSET;
+					hold = MIN_STRETCH + random.nextInt(MAX_STRETCH - MIN_STRETCH + 1);
+				}
+
+				writer.writeByte(offset);
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		setCount(out, segments);
+	}
+
+	///=========================================================================
+	///Creates a track file and writes its header; the number of segments is
+	///filled in once we know it (see setCount)
+	///=========================================================================
+	private static DataOutputStream create(File out) throws IOException
+	{
+		DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)));
+		writer.writeInt(Track.MAGIC);
+		writer.writeInt(Track.VERSION);
+		writer.writeInt(0);
+		return writer;
+	}
+
+	private static void setCount(File out, int count) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(out, "rw");
+		try
+		{
+			file.seek(Track.HEADER_SIZE - 4);
+			file.writeInt(count);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,318 @@
+///=============================================================================
+///@file    Traffic.java
+///@brief   The opponents: how they drive and what they run into.
+///=============================================================================
+
+import java.util.Random;
+
+///=============================================================================
+///Like Simulation this class has no AWT dependency; the cars themselves are
+///game state and live in GameState.
+///
+///The cars are kept sorted by track distance (then lane), so the only cars
+///that can touch a car are the ones right after it in the arrays: from each
+///car we sweep forward until the next car is too far ahead to matter, which
+///costs about one or two tests per car instead of one test per pair. Cars
+///only pass each other a few at a time, so the order barely changes from one
+///tick to the next and an insertion sort restores it in about linear time as
+///well. The lane bounds of every car are computed once per tick and reused
+///by every test it takes part in.
+///
+///Every change a tick makes is scaled to the tick rate like the player's
+///(see Simulation.scale), with what is left over kept per car.
+///=============================================================================
+class Traffic
+{
+	final public static int CAR_WIDTH = Player.WIDTH;				//pixels (bottom scanline)
+	final public static long CAR_LENGTH = FixedPoint.FP_LONG_ONE;	//1 km in 32.32
+	final public static int MAX_LANE = PolePosition.BASE_WIDTH / 2 - Player.WIDTH / 2;	//farthest a car gets off center
+
+	final private static int MIN_CRUISE = 150;		//slowest car (km/h)
+	final private static int MAX_CRUISE = 280;		//fastest car, a bit slower than the player
+	final private static int GRID_LANE = 100;		//lanes of the two columns of the starting grid
+	final private static long GRID_GAP = 2 * FixedPoint.FP_LONG_ONE;	//km between rows of the grid
+	final private static long LOOK_AHEAD = 3 * FixedPoint.FP_LONG_ONE;	//km a driver looks ahead
+	final private static int LANE_STEP = 10;		//pixels a car moves sideways per tick
+	final private static int BUMP = 20;				//km/h lost when running into a car
+
+	//what changes every tick, per car (see Simulation.scale)
+	final private static int SPEED = 0;
+	final private static int LANE = 1;
+	final private static int QUANTITIES = 2;
+
+	private long m_Length;		//length of the circuit, 32.32
+	private int[] m_Cruise;		//speed each car likes to drive at (by id)
+	private int[] m_Left;		//lane bounds of each car (by place), every tick
+	private int[] m_Right;
+	private int m_TickRate;		//ticks per second
+	private int[] m_Remainders;	//QUANTITIES per car (by id), then the player's speed
+
+	///=========================================================================
+	///Constructor; lines the cars up on the starting grid, ahead of the player
+	///@param Track track		the circuit to race on
+	///@param Random random		picks the speed of every car
+	///@param GameState s		the state holding the cars
+	///@param int tickRate		ticks per second
+	///=========================================================================
+	public Traffic(Track track, Random random, GameState s, int tickRate)
+	{
+		m_Length = FixedPoint.LongFromInt(track.getLength());
+		m_Cruise = new int[s.opponents];
+		m_Left = new int[s.opponents];
+		m_Right = new int[s.opponents];
+		m_TickRate = tickRate;
+		m_Remainders = new int[s.opponents * QUANTITIES + 1];
+
+		for (int i = 0; i < s.opponents; ++i)
+		{
+			m_Cruise[i] = MIN_CRUISE + random.nextInt(MAX_CRUISE - MIN_CRUISE + 1);
+			s.oppDistance[i] = ((i / 2 + 1) * GRID_GAP) % m_Length;
+			s.oppLane[i] = (i % 2 == 0) ? -GRID_LANE : GRID_LANE;
+			s.oppSpeed[i] = 0;
+			s.oppId[i] = i;
+		}
+
+		sort(s);
+	}
+
+	///=========================================================================
+	///Advances the cars by one tick
+	///@param GameState s	the state to update
+	///=========================================================================
+	public void update(GameState s)
+	{
+		int n = s.opponents;
+
+		//move every car the way the player moves
+		for (int i = 0; i < n; ++i)
+		{
+			long distance = s.oppDistance[i] + Simulation.getAdvance(s.oppSpeed[i], m_TickRate);
+			if (distance >= m_Length)
+			{
+				distance -= m_Length;
+			}
+			s.oppDistance[i] = distance;
+		}
+
+		sort(s);
+
+		for (int i = 0; i < n; ++i)
+		{
+			m_Left[i] = s.oppLane[i] - CAR_WIDTH / 2;
+			m_Right[i] = s.oppLane[i] + CAR_WIDTH / 2;
+		}
+
+		for (int i = 0; i < n; ++i)
+		{
+			drive(s, i);
+		}
+
+		hitPlayer(s);
+	}
+
+	///=========================================================================
+	///One driver: cruise, or keep behind whatever is in the way (slowing down
+	///some more after touching it) while moving over to pass it
+	///@param GameState s	the state
+	///@param int i			place of the car
+	///=========================================================================
+	private void drive(GameState s, int i)
+	{
+		int n = s.opponents;
+		int target = m_Cruise[s.oppId[i]];
+		int blocker = Integer.MIN_VALUE;	//lane of what's in the way
+
+		//the cars ahead, nearest first, going round past the start line
+		for (int k = 1; k < n; ++k)
+		{
+			int j = i + k;
+			long gap = s.oppDistance[(j < n) ? j : j - n] - s.oppDistance[i];
+			if (j >= n)
+			{
+				j -= n;
+				gap += m_Length;
+			}
+
+			if (gap >= LOOK_AHEAD)
+			{
+				break;
+			}
+
+			if (m_Left[j] < m_Right[i] && m_Left[i] < m_Right[j])
+			{
+				target = Math.min(target, (gap < CAR_LENGTH) ? s.oppSpeed[j] - BUMP : s.oppSpeed[j]);
+				blocker = s.oppLane[j];
+				break;
+			}
+		}
+
+		//the player is in the way too
+		long gap = s.distance - s.oppDistance[i];
+		if (gap < 0)
+		{
+			gap += m_Length;
+		}
+
+		int left = -s.scroll - CAR_WIDTH / 2;
+		if (gap < LOOK_AHEAD && left < m_Right[i] && m_Left[i] < left + CAR_WIDTH)
+		{
+			target = Math.min(target, s.speed);
+			blocker = -s.scroll;
+		}
+
+		if (blocker != Integer.MIN_VALUE)
+		{
+			//pass on the nearest side there is room on, if any
+			int lane = s.oppLane[i];
+			boolean passLeft = blocker - CAR_WIDTH >= -MAX_LANE;
+			boolean passRight = blocker + CAR_WIDTH <= MAX_LANE;
+			if (passLeft && (lane <= blocker || !passRight))
+			{
+				s.oppLane[i] = Math.max(lane + scale(-LANE_STEP, s.oppId[i], LANE), -MAX_LANE);
+			}
+			else if (passRight)
+			{
+				s.oppLane[i] = Math.min(lane + scale(LANE_STEP, s.oppId[i], LANE), MAX_LANE);
+			}
+		}
+
+		int speed = s.oppSpeed[i];
+		if (speed < target)
+		{
+			speed = Math.min(speed + scale(Player.ACCEL, s.oppId[i], SPEED), target);
+		}
+		else
+		{
+			speed = Math.max(speed + scale(-Player.BRAKE, s.oppId[i], SPEED), target);
+		}
+		s.oppSpeed[i] = Math.max(speed, 0);
+	}
+
+	///=========================================================================
+	///Slows down the player when running into a car, or the car when it runs
+	///into the player
+	///@param GameState s	the state
+	///=========================================================================
+	private void hitPlayer(GameState s)
+	{
+		int n = s.opponents;
+		long from = s.distance - CAR_LENGTH;
+		if (from < 0)
+		{
+			from += m_Length;
+		}
+
+		int left = -s.scroll - CAR_WIDTH / 2;
+		int right = left + CAR_WIDTH;
+		int first = find(s, from);
+
+		//the cars less than a car length behind or ahead of the player
+		for (int k = 0; k < n; ++k)
+		{
+			int j = (first + k < n) ? first + k : first + k - n;
+			long gap = s.oppDistance[j] - from;
+			if (gap < 0)
+			{
+				gap += m_Length;
+			}
+
+			if (gap >= 2 * CAR_LENGTH)
+			{
+				break;
+			}
+
+			if (m_Left[j] < right && left < m_Right[j])
+			{
+				if (gap < CAR_LENGTH)
+				{
+					s.oppSpeed[j] = Math.max(Math.min(s.oppSpeed[j], s.speed) + scale(-BUMP, s.oppId[j], SPEED), 0);
+				}
+				else
+				{
+					int bump = Simulation.scale(-BUMP, m_TickRate, m_Remainders, m_Remainders.length - 1);
+					s.speed = Math.max(Math.min(s.speed, s.oppSpeed[j]) + bump, 0);
+					s.collisions++;
+				}
+			}
+		}
+	}
+
+	///=========================================================================
+	///Scales a change of a car to the tick rate (see Simulation.scale)
+	///@param int change	the change in a tick at Simulation.BASE_TICK_RATE
+	///@param int id		the car
+	///@param int i			the quantity changed (SPEED or LANE)
+	///=========================================================================
+	private int scale(int change, int id, int i)
+	{
+		return Simulation.scale(change, m_TickRate, m_Remainders, id * QUANTITIES + i);
+	}
+
+	///=========================================================================
+	///Finds the first car at or after a distance (binary search)
+	///@param GameState s		the state
+	///@param long distance		km, 32.32
+	///@return its place; going round past the start line, so 0 when every
+	///		   car is before the distance
+	///=========================================================================
+	static int find(GameState s, long distance)
+	{
+		int low = 0;
+		int high = s.opponents;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (s.oppDistance[middle] < distance)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return (low < s.opponents) ? low : 0;
+	}
+
+	///=========================================================================
+	///Insertion sort by distance, then lane; next to linear when the cars are
+	///nearly sorted already, which they are after a tick
+	///=========================================================================
+	private static void sort(GameState s)
+	{
+		long[] distance = s.oppDistance;
+		int[] lane = s.oppLane;
+		int[] speed = s.oppSpeed;
+		int[] id = s.oppId;
+
+		for (int i = 1; i < s.opponents; ++i)
+		{
+			long d = distance[i];
+			int l = lane[i];
+			int v = speed[i];
+			int c = id[i];
+
+			int j = i - 1;
+			while (j >= 0 && (distance[j] > d || (distance[j] == d && lane[j] > l)))
+			{
+				distance[j + 1] = distance[j];
+				lane[j + 1] = lane[j];
+				speed[j + 1] = speed[j];
+				id[j + 1] = id[j];
+				--j;
+			}
+
+			distance[j + 1] = d;
+			lane[j + 1] = l;
+			speed[j + 1] = v;
+			id[j + 1] = c;
+		}
+
+		for (int i = 0; i < s.opponents; ++i)
+		{
+			s.oppPlace[id[i]] = i;
+		}
+	}
+}